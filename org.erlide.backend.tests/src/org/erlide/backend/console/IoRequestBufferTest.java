@@ -0,0 +1,102 @@
+package org.erlide.backend.console;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.List;
+
+import org.erlide.runtime.shell.IoRequest;
+import org.erlide.runtime.shell.IoRequest.IoRequestKind;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.collect.Lists;
+
+public class IoRequestBufferTest {
+
+    private static final OtpErlangPid LEADER = new OtpErlangPid("n", 1, 0, 0);
+    private static final OtpErlangPid A = new OtpErlangPid("n", 2, 0, 0);
+    private static final OtpErlangPid B = new OtpErlangPid("n", 3, 0, 0);
+
+    @Test
+    public void findAtPos() {
+        final IoRequestBuffer buffer = new IoRequestBuffer(3, 2);
+        buffer.add(input("ab"));
+        buffer.add(input(""));
+        buffer.add(input("cde"));
+        buffer.add(input("f"));
+        assertThat(buffer.getLength(), is(6));
+        assertThat(buffer.findAtPos(1).getMessage(), is("ab"));
+        assertThat(buffer.findAtPos(2).getMessage(), is("cde"));
+        assertThat(buffer.findAtPos(4).getStart(), is(2));
+        assertThat(buffer.findAtPos(5).getMessage(), is("f"));
+        assertThat(buffer.findAtPos(6), is(nullValue()));
+        assertThat(buffer.findAtPos(-1), is(nullValue()));
+    }
+
+    @Test
+    public void oldestChunkIsDropped() {
+        final IoRequestBuffer buffer = new IoRequestBuffer(2, 2);
+        assertThat(buffer.add(input("a")), is(0));
+        assertThat(buffer.add(input("bb")), is(0));
+        assertThat(buffer.add(input("ccc")), is(0));
+        assertThat(buffer.add(input("dddd")), is(0));
+        assertThat(buffer.add(input("e")), is(3));
+        assertThat(buffer.size(), is(3));
+        assertThat(buffer.getText(), is("cccdddde"));
+        assertThat(buffer.findAtPos(0).getStart(), is(0));
+        assertThat(buffer.findAtPos(7).getStart(), is(7));
+        assertThat(buffer.getLastMessages(5), contains("ccc", "dddd", "e"));
+    }
+
+    @Test
+    public void getAllFrom() {
+        final IoRequestBuffer buffer = new IoRequestBuffer(2, 2);
+        buffer.add(output("1", A));
+        buffer.add(output("2", B));
+        buffer.add(output("3", A));
+        buffer.add(output("4", A));
+        assertThat(messages(buffer.getAllFrom(A)), contains("1", "3", "4"));
+        buffer.add(output("5", B));
+        assertThat(messages(buffer.getAllFrom(A)), contains("3", "4"));
+        assertThat(messages(buffer.getAllFrom(B)), contains("5"));
+        assertThat(buffer.getAllFrom(B).get(0).getStart(), is(2));
+        assertThat(buffer.getAllFrom(LEADER).isEmpty(), is(true));
+    }
+
+    @Test
+    public void manyLines() {
+        final IoRequestBuffer buffer = new IoRequestBuffer(10, 500);
+        for (int i = 0; i < 100000; i++) {
+            buffer.add(output(String.format("%06d\n", i), i % 2 == 0 ? A : B));
+        }
+        assertThat(buffer.size(), is(5000));
+        assertThat(buffer.getLength(), is(7 * buffer.size()));
+        assertThat(buffer.findAtPos(7 * 1000 + 3).getMessage(), is("096000\n"));
+        assertThat(buffer.getAllFrom(B).size(), is(buffer.size() / 2));
+    }
+
+    private static IoRequest input(final String text) {
+        return new IoRequest(text, IoRequestKind.INPUT);
+    }
+
+    private static IoRequest output(final String text, final OtpErlangPid sender) {
+        return new IoRequest(new OtpErlangTuple(new OtpErlangObject[] {
+                new OtpErlangString(text), LEADER, sender, new OtpErlangAtom("t") }));
+    }
+
+    private static List<String> messages(final List<IoRequest> requests) {
+        final List<String> result = Lists.newArrayList();
+        for (final IoRequest request : requests) {
+            result.add(request.getMessage());
+        }
+        return result;
+    }
+
+}
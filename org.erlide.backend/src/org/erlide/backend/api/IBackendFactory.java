@@ -9,6 +9,12 @@ public interface IBackendFactory {
 
     IBackend createBuildBackend(final RuntimeInfo info);
 
+    /**
+     * Create an extra build backend for the same runtime, to compile in
+     * parallel with the first one.
+     */
+    IBackend createBuildBackend(final RuntimeInfo info, final int index);
+
     IBackend createBackend(final BackendData data);
 
     IOtpNodeProxy createNodeProxy(BackendData data);
@@ -1,6 +1,7 @@
 package org.erlide.backend.api;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
@@ -18,6 +19,21 @@ public interface IBackendManager extends IEpmdListener {
 
     IBackend getBuildBackend(@NonNull final IErlProject project);
 
+    /**
+     * @return the project's build backend followed by up to count-1 extra build
+     *         backends for the same runtime, that are started when first
+     *         needed.
+     */
+    List<IBackend> getBuildBackends(@NonNull final IErlProject project, final int count);
+
+    /**
+     * Must be called once for each call to getBuildBackends that returned,
+     * when the build is done. A call that throws has already released. The
+     * extra backends of a runtime are stopped after they have been unused for
+     * a while.
+     */
+    void releaseBuildBackends(@NonNull final IErlProject project);
+
     void removeBackend(IBackend backend);
 
     Set<IBackend> getExecutionBackends(@NonNull final IProject project);
@@ -12,6 +12,7 @@ package org.erlide.backend.console;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.erlide.backend.api.IBackend;
@@ -42,7 +43,7 @@ public class BackendShell implements IBackendShell {
         this.backend = backend;
         fId = id;
         this.server = server;
-        requests = new ArrayList<>(1000);
+        requests = new IoRequestBuffer(MAX_REQUESTS / DELTA_REQUESTS, DELTA_REQUESTS);
         listeners = new ArrayList<>();
     }
 
@@ -82,9 +83,8 @@ public class BackendShell implements IBackendShell {
     private static final int MAX_REQUESTS = 5000;
     private static final int DELTA_REQUESTS = 500;
 
-    private final List<IoRequest> requests;
+    private final IoRequestBuffer requests;
     private final List<BackendShellListener> listeners;
-    private int length = 0;
 
     @Override
     public void input(final String s0) {
@@ -92,29 +92,12 @@ public class BackendShell implements IBackendShell {
         if (!s.endsWith("\n")) {
             s += "\n";
         }
-        final IoRequest request = new IoRequest(s, IoRequestKind.INPUT);
-        request.setStart(length);
-        final int prevLength = length;
-        addRequest(request);
-        notifyListeners(makeEvent(prevLength, request));
-    }
-
-    private void addRequest(final IoRequest req) {
-        final int reqLength = req.getLength();
-        length += reqLength;
-        synchronized (requests) {
-            requests.add(req);
-        }
+        addRequests(Collections.singletonList(new IoRequest(s, IoRequestKind.INPUT)));
     }
 
     @Override
     public void add(final OtpErlangObject msg) {
-        deleteOldItems();
-        final int prevLength = length;
-        final IoRequest request = addRequestFromTuple(msg);
-        if (request != null) {
-            notifyListeners(makeEvent(prevLength, request));
-        }
+        add(Collections.singletonList(msg));
     }
 
     @Override
@@ -122,88 +105,59 @@ public class BackendShell implements IBackendShell {
         if (IoRequest.RE_PROMPT.matcher(text).matches()) {
             return;
         }
-        final IoRequest request = new IoRequest(text, kind);
-        request.setStart(length);
-        final int prevLength = length;
-        addRequest(request);
-        notifyListeners(makeEvent(prevLength, request));
+        addRequests(Collections.singletonList(new IoRequest(text, kind)));
     }
 
-    private BackendShellEvent makeEvent(final int prevLength, final IoRequest request) {
-        return new BackendShellEvent(prevLength, 0, request.getMessage());
-    }
-
-    private IoRequest addRequestFromTuple(final OtpErlangObject msg) {
-        if (!(msg instanceof OtpErlangTuple)) {
-            return null;
+    @Override
+    public void add(final List<OtpErlangObject> msgs) {
+        final List<IoRequest> added = Lists.newArrayListWithCapacity(msgs.size());
+        for (final OtpErlangObject msg : msgs) {
+            if (msg instanceof OtpErlangTuple) {
+                added.add(new IoRequest((OtpErlangTuple) msg));
+            }
         }
-        final IoRequest request = new IoRequest((OtpErlangTuple) msg);
-        request.setStart(length);
-        addRequest(request);
-        return request;
+        addRequests(added);
     }
 
-    private void deleteOldItems() {
-        final int prevLength = length;
+    private void addRequests(final List<IoRequest> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        // listeners are notified while holding the lock, so that they see
+        // the changes in order
         synchronized (requests) {
-            if (requests.size() > MAX_REQUESTS) {
-                requests.subList(0, DELTA_REQUESTS).clear();
-                final IoRequest first = requests.get(0);
-                final int start = first.getStart();
-                length = 0;
-                for (final IoRequest request : requests) {
-                    request.setStart(request.getStart() - start);
-                    length += request.getLength();
-                }
+            final int prevLength = requests.getLength();
+            final StringBuilder text = new StringBuilder();
+            int removed = 0;
+            for (final IoRequest request : added) {
+                removed += requests.add(request);
+                text.append(request.getMessage());
             }
-        }
-        if (length != prevLength) {
-            notifyListeners(new BackendShellEvent(0, length - prevLength, ""));
+            if (removed > prevLength) {
+                // some of the new requests were dropped too
+                notifyListeners(new BackendShellEvent(0, prevLength, requests
+                        .getText()));
+                return;
+            }
+            if (removed > 0) {
+                notifyListeners(new BackendShellEvent(0, removed, ""));
+            }
+            notifyListeners(new BackendShellEvent(prevLength - removed, 0, text
+                    .toString()));
         }
     }
 
     @Override
     public IoRequest findAtPos(final int thePos) {
         synchronized (requests) {
-            for (final IoRequest req : requests) {
-                if (req.getStart() <= thePos
-                        && req.getStart() + req.getLength() > thePos) {
-                    return req;
-                }
-            }
-            return null;
+            return requests.findAtPos(thePos);
         }
     }
 
     @Override
     public List<IoRequest> getAllFrom(final OtpErlangPid sender) {
-        final List<IoRequest> result = new ArrayList<>();
-        synchronized (requests) {
-            for (final IoRequest element : requests) {
-                if (element.getSender().equals(sender)) {
-                    result.add(element);
-                }
-            }
-        }
-        return result;
-    }
-
-    @Override
-    public void add(final List<OtpErlangObject> msgs) {
-        final int prevLength = length;
-        final StringBuffer text = new StringBuffer();
         synchronized (requests) {
-            deleteOldItems();
-            for (final OtpErlangObject element : msgs) {
-                final IoRequest request = addRequestFromTuple(element);
-                if (request != null) {
-                    requests.add(request);
-                    text.append(request.getMessage());
-                }
-            }
-        }
-        if (!requests.isEmpty()) {
-            notifyListeners(new BackendShellEvent(prevLength, 0, text.toString()));
+            return requests.getAllFrom(sender);
         }
     }
 
@@ -214,21 +168,20 @@ public class BackendShell implements IBackendShell {
 
     @Override
     public synchronized void addListener(final BackendShellListener listener) {
-        sendEarlierRequests(listener);
-        synchronized (listeners) {
-            if (!listeners.contains(listener)) {
-                listeners.add(listener);
+        // no requests may be added between sending the text and registering
+        synchronized (requests) {
+            sendEarlierRequests(listener);
+            synchronized (listeners) {
+                if (!listeners.contains(listener)) {
+                    listeners.add(listener);
+                }
             }
         }
     }
 
     private void sendEarlierRequests(final BackendShellListener listener) {
-        int alength = 0;
-        synchronized (requests) {
-            for (final IoRequest request : requests) {
-                listener.changed(makeEvent(alength, request));
-                alength += request.getLength();
-            }
+        if (requests.size() > 0) {
+            listener.changed(new BackendShellEvent(0, 0, requests.getText()));
         }
     }
 
@@ -251,29 +204,23 @@ public class BackendShell implements IBackendShell {
 
     @Override
     public int getTextLength() {
-        return length;
+        synchronized (requests) {
+            return requests.getLength();
+        }
     }
 
     @Override
     public String getText() {
-        final StringBuffer result = new StringBuffer();
         synchronized (requests) {
-            for (final IoRequest request : requests) {
-                result.append(request.getMessage());
-            }
+            return requests.getText();
         }
-        return result.toString();
     }
 
     @Override
     public String[] getLastMessages(final int nMessages) {
-        final List<String> result = Lists.newArrayListWithCapacity(nMessages);
+        final List<String> result;
         synchronized (requests) {
-            final int size = requests.size();
-            final int n = Math.min(nMessages, size);
-            for (int i = size - n; i < size; ++i) {
-                result.add(requests.get(i).getMessage());
-            }
+            result = requests.getLastMessages(nMessages);
         }
         return result.toArray(new String[nMessages]);
     }
@@ -0,0 +1,195 @@
+package org.erlide.backend.console;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import org.erlide.runtime.shell.IoRequest;
+
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The requests of a console, kept in a ring of fixed size chunks. When the ring
+ * is full, the oldest chunk is dropped and reused, so trimming doesn't move or
+ * renumber the remaining requests.
+ * <p>
+ * Offsets are stored from the start of the session and translated when a
+ * request is handed out, so that {@link IoRequest#getStart()} is relative to
+ * the text that is still kept. Not thread safe.
+ */
+final class IoRequestBuffer {
+
+    private static final class Chunk {
+        final IoRequest[] requests;
+        final long[] starts;
+        int size;
+
+        Chunk(final int capacity) {
+            requests = new IoRequest[capacity];
+            starts = new long[capacity];
+        }
+    }
+
+    private final int chunkSize;
+    private final Chunk[] chunks;
+    private int first;
+    private int chunkCount;
+    // requests are numbered from the start of the session
+    private long firstIndex;
+    private long nextIndex;
+    private long start;
+    private long end;
+    private final Map<OtpErlangPid, Deque<Long>> bySender = Maps.newHashMap();
+
+    IoRequestBuffer(final int maxChunks, final int chunkSize) {
+        this.chunkSize = chunkSize;
+        chunks = new Chunk[maxChunks];
+    }
+
+    /**
+     * @return the length of the text that was dropped from the front to make
+     *         room for the request
+     */
+    int add(final IoRequest request) {
+        int removed = 0;
+        Chunk last = chunkCount == 0 ? null : chunk(chunkCount - 1);
+        if (last == null || last.size == chunkSize) {
+            if (chunkCount == chunks.length) {
+                removed = removeFirstChunk();
+            }
+            final int slot = (first + chunkCount) % chunks.length;
+            if (chunks[slot] == null) {
+                chunks[slot] = new Chunk(chunkSize);
+            }
+            last = chunks[slot];
+            chunkCount++;
+        }
+        last.requests[last.size] = request;
+        last.starts[last.size] = end;
+        last.size++;
+        request.setStart((int) (end - start));
+        end += request.getLength();
+
+        Deque<Long> fromSender = bySender.get(request.getSender());
+        if (fromSender == null) {
+            fromSender = new ArrayDeque<>();
+            bySender.put(request.getSender(), fromSender);
+        }
+        fromSender.addLast(nextIndex);
+        nextIndex++;
+        return removed;
+    }
+
+    private int removeFirstChunk() {
+        final Chunk chunk = chunks[first];
+        for (int i = 0; i < chunk.size; i++) {
+            final OtpErlangPid sender = chunk.requests[i].getSender();
+            final Deque<Long> fromSender = bySender.get(sender);
+            fromSender.removeFirst();
+            if (fromSender.isEmpty()) {
+                bySender.remove(sender);
+            }
+        }
+        final long newStart = chunkCount > 1 ? chunk(1).starts[0] : end;
+        final int removed = (int) (newStart - start);
+        start = newStart;
+        firstIndex += chunk.size;
+        Arrays.fill(chunk.requests, null);
+        chunk.size = 0;
+        first = (first + 1) % chunks.length;
+        chunkCount--;
+        return removed;
+    }
+
+    private Chunk chunk(final int n) {
+        return chunks[(first + n) % chunks.length];
+    }
+
+    private IoRequest get(final long index) {
+        final int i = (int) (index - firstIndex);
+        return get(chunk(i / chunkSize), i % chunkSize);
+    }
+
+    private IoRequest get(final Chunk chunk, final int i) {
+        final IoRequest request = chunk.requests[i];
+        request.setStart((int) (chunk.starts[i] - start));
+        return request;
+    }
+
+    int size() {
+        return (int) (nextIndex - firstIndex);
+    }
+
+    int getLength() {
+        return (int) (end - start);
+    }
+
+    IoRequest findAtPos(final int pos) {
+        if (pos < 0 || pos >= getLength()) {
+            return null;
+        }
+        final long offset = start + pos;
+        // the last chunk, then the last request in it, that starts at or
+        // before offset
+        int lo = 0;
+        int hi = chunkCount - 1;
+        while (lo < hi) {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (chunk(mid).starts[0] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        final Chunk chunk = chunk(lo);
+        lo = 0;
+        hi = chunk.size - 1;
+        while (lo < hi) {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (chunk.starts[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return get(chunk, lo);
+    }
+
+    List<IoRequest> getAllFrom(final OtpErlangPid sender) {
+        final Deque<Long> fromSender = bySender.get(sender);
+        if (fromSender == null) {
+            return Lists.newArrayList();
+        }
+        final List<IoRequest> result = Lists.newArrayListWithCapacity(fromSender
+                .size());
+        for (final long index : fromSender) {
+            result.add(get(index));
+        }
+        return result;
+    }
+
+    List<String> getLastMessages(final int n) {
+        final int count = Math.min(n, size());
+        final List<String> result = Lists.newArrayListWithCapacity(count);
+        for (long index = nextIndex - count; index < nextIndex; index++) {
+            result.add(get(index).getMessage());
+        }
+        return result;
+    }
+
+    String getText() {
+        final StringBuilder result = new StringBuilder(getLength());
+        for (int n = 0; n < chunkCount; n++) {
+            final Chunk chunk = chunk(n);
+            for (int i = 0; i < chunk.size; i++) {
+                result.append(chunk.requests[i].getMessage());
+            }
+        }
+        return result.toString();
+    }
+
+}
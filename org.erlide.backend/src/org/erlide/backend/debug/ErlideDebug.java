@@ -1,7 +1,10 @@
 package org.erlide.backend.debug;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -10,7 +13,9 @@ import org.erlide.backend.BackendUtils;
 import org.erlide.backend.api.IBackend;
 import org.erlide.backend.internal.BackendActivator;
 import org.erlide.runtime.rpc.IOtpRpc;
+import org.erlide.runtime.rpc.IRpcBatch;
 import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcResult;
 import org.erlide.runtime.rpc.RpcTimeoutException;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.Util;
@@ -23,10 +28,14 @@ import com.ericsson.otp.erlang.OtpErlangList;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangPid;
 import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.collect.Lists;
 
 public class ErlideDebug {
 
     private static final String ERLIDE_DEBUG = "erlide_debug";
+    // interpreting a module can take a while, keep each batch within the
+    // default timeout
+    private static final int INTERPRET_BATCH_SIZE = 32;
 
     @SuppressWarnings("boxing")
     public static OtpErlangList getProcesses(final IOtpRpc backend,
@@ -124,21 +133,62 @@ public class ErlideDebug {
         try {
             final OtpErlangObject res = backend.call(ERLIDE_DEBUG, "interpret", "alxoo",
                     moduleName, options, distributed, interpret);
-            if (res instanceof OtpErlangTuple) {
-                final OtpErlangTuple t = (OtpErlangTuple) res;
-                final OtpErlangObject o = t.elementAt(0);
-                if (o instanceof OtpErlangAtom) {
-                    final OtpErlangAtom moduleAtom = (OtpErlangAtom) o;
-                    return moduleAtom.atomValue().equals("module");
-                }
-            }
-            return Util.isOk(res);
+            return isInterpretOk(res);
         } catch (final RpcException e) {
             ErlLogger.warn(e);
         }
         return false;
     }
 
+    /**
+     * Interpret or stop interpreting many modules, sending the calls in
+     * batches instead of one round-trip per module.
+     *
+     * @param modules
+     *            the options for each module, as for
+     *            {@link #interpret(IOtpRpc, String, OtpErlangList, boolean, boolean)}
+     * @return the modules for which the call failed
+     */
+    @SuppressWarnings("boxing")
+    public static Set<String> interpret(final IOtpRpc backend,
+            final Map<String, OtpErlangList> modules, final boolean distributed,
+            final boolean interpret) {
+        final Set<String> failed = new HashSet<>();
+        final List<String> names = new ArrayList<>(modules.keySet());
+        for (final List<String> chunk : Lists.partition(names, INTERPRET_BATCH_SIZE)) {
+            try {
+                final IRpcBatch batch = backend.batch();
+                for (final String module : chunk) {
+                    batch.add(ERLIDE_DEBUG, "interpret", "alxoo", module,
+                            modules.get(module), distributed, interpret);
+                }
+                final List<RpcResult> results = batch.call();
+                for (int i = 0; i < chunk.size(); i++) {
+                    final RpcResult result = results.get(i);
+                    if (!result.isOk() || !isInterpretOk(result.getValue())) {
+                        failed.add(chunk.get(i));
+                    }
+                }
+            } catch (final RpcException e) {
+                ErlLogger.warn(e);
+                failed.addAll(chunk);
+            }
+        }
+        return failed;
+    }
+
+    private static boolean isInterpretOk(final OtpErlangObject res) {
+        if (res instanceof OtpErlangTuple) {
+            final OtpErlangTuple t = (OtpErlangTuple) res;
+            final OtpErlangObject o = t.elementAt(0);
+            if (o instanceof OtpErlangAtom) {
+                final OtpErlangAtom moduleAtom = (OtpErlangAtom) o;
+                return moduleAtom.atomValue().equals("module");
+            }
+        }
+        return Util.isOk(res);
+    }
+
     @SuppressWarnings("boxing")
     public static void addDeleteLineBreakpoint(final IBackend backend,
             final String module, final int line, final int action) {
@@ -14,7 +14,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Enumeration;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -49,6 +50,7 @@ import org.erlide.backend.debug.IErlangDebugNode;
 import org.erlide.engine.ErlangEngine;
 import org.erlide.engine.model.root.ErlangProjectProperties;
 import org.erlide.engine.model.root.IErlModel;
+import org.erlide.engine.model.root.IErlProject;
 import org.erlide.runtime.api.ErlDebugFlags;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.IDisposable;
@@ -64,6 +66,7 @@ import com.ericsson.otp.erlang.OtpErlangPid;
 import com.ericsson.otp.erlang.OtpErlangString;
 import com.ericsson.otp.erlang.OtpErlangTuple;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 public class ErlangDebugTarget extends ErlangDebugElement
         implements IDebugTarget, IErlangDebugNode, IDisposable {
@@ -103,7 +106,7 @@ public class ErlangDebugTarget extends ErlangDebugElement
 
         allProcesses = new ArrayList<>();
         localProcesses = new ArrayList<>();
-        interpretedModules = new HashSet<>();
+        interpretedModules = Sets.newConcurrentHashSet();
 
         debuggerDaemon = new DebuggerEventDaemon(backend, this);
         debuggerDaemon.start();
@@ -457,12 +460,38 @@ public class ErlangDebugTarget extends ErlangDebugElement
 
     public void interpretModules(final Collection<String> modules,
             final boolean distributed) {
+        final Map<String, OtpErlangList> options = new LinkedHashMap<>();
+        final Map<IProject, OtpErlangList> projectDirs = new HashMap<>();
         for (final String pm : modules) {
             final String[] pms = pm.split(":");
             final IProject project = ResourcesPlugin.getWorkspace().getRoot()
                     .getProject(pms[0]);
             final String moduleName = pms[1].replace(".erl", "");
-            interpret(project, moduleName, distributed, true);
+            options.put(moduleName, getProjectDirs(project, projectDirs));
+        }
+        interpret(options, distributed, true);
+    }
+
+    private void interpret(final Map<String, OtpErlangList> modules,
+            final boolean distributed, final boolean interpret) {
+        if (modules.isEmpty()) {
+            return;
+        }
+        ErlLogger.debug("%sinterpret %d modules", interpret ? "" : "de", modules.size());
+        final Set<String> failed = ErlideDebug.interpret(backend.getOtpRpc(), modules,
+                distributed, interpret);
+        for (final String module : modules.keySet()) {
+            if (failed.contains(module)) {
+                continue;
+            }
+            if (interpret) {
+                interpretedModules.add(module);
+            } else {
+                interpretedModules.remove(module);
+            }
+        }
+        if (!failed.isEmpty()) {
+            ErlLogger.warn("could not %sinterpret %s", interpret ? "" : "de", failed);
         }
     }
 
@@ -474,10 +503,23 @@ public class ErlangDebugTarget extends ErlangDebugElement
                 interpret);
     }
 
+    private OtpErlangList getProjectDirs(final IProject project,
+            final Map<IProject, OtpErlangList> cache) {
+        OtpErlangList result = cache.get(project);
+        if (result == null) {
+            result = getProjectDirs(project);
+            cache.put(project, result);
+        }
+        return result;
+    }
+
     private OtpErlangList getProjectDirs(final IProject project) {
         final IErlModel model = ErlangEngine.getInstance().getModel();
-        final ErlangProjectProperties properties = model.findProject(project)
-                .getProperties();
+        final IErlProject erlProject = model.findProject(project);
+        if (erlProject == null) {
+            return new OtpErlangList();
+        }
+        final ErlangProjectProperties properties = erlProject.getProperties();
         final String ebin = properties.getOutputDir().toPortableString();
         final Collection<IPath> srcs = properties.getSourceDirs();
         try {
@@ -11,6 +11,8 @@ package org.erlide.backend.internal;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.Path;
@@ -47,6 +49,7 @@ import org.erlide.util.SystemConfiguration;
 import com.ericsson.otp.erlang.OtpErlangBinary;
 import com.ericsson.otp.erlang.OtpErlangPid;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Service;
 import com.google.common.util.concurrent.Service.Listener;
@@ -372,25 +375,29 @@ public class Backend implements IStreamListener, IBackend {
     private void loadBeamsFromDir(final String outDir) {
         final File dir = new File(outDir);
         if (dir.isDirectory()) {
+            final Map<String, OtpErlangBinary> beams = Maps.newHashMap();
             for (final File f : dir.listFiles()) {
                 final Path path = new Path(f.getPath());
                 if (path.getFileExtension() != null
                         && "beam".compareTo(path.getFileExtension()) == 0) {
                     final String m = path.removeFileExtension().lastSegment();
-                    try {
-                        boolean ok = false;
-                        final OtpErlangBinary bin = BeamUtil.getBeamBinary(m, path);
-                        if (bin != null) {
-                            ok = BeamLoader.loadBeam(getOtpRpc(), m, bin);
-                        }
-                        if (!ok) {
-                            ErlLogger.error("Could not load %s", m);
-                        }
-                    } catch (final Exception ex) {
-                        ErlLogger.warn(ex);
+                    final OtpErlangBinary bin = BeamUtil.getBeamBinary(m, path);
+                    if (bin != null) {
+                        beams.put(m, bin);
+                    } else {
+                        ErlLogger.error("Could not load %s", m);
                     }
                 }
             }
+            try {
+                final Map<String, String> failed = BeamLoader.loadBeams(getOtpRpc(),
+                        beams);
+                for (final Entry<String, String> m : failed.entrySet()) {
+                    ErlLogger.error("Could not load %s: %s", m.getKey(), m.getValue());
+                }
+            } catch (final Exception ex) {
+                ErlLogger.warn(ex);
+            }
         }
     }
 
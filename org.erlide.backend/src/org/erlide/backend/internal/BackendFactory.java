@@ -49,6 +49,16 @@ public class BackendFactory implements IBackendFactory {
         return backend;
     }
 
+    @Override
+    public synchronized IBackend createBuildBackend(final RuntimeInfo info,
+            final int index) {
+        ErlLogger.debug("Create build backend " + info.getVersion().asMajor().toString()
+                + " #" + index);
+        final BackendData data = getBuildBackendData(info);
+        data.setNodeName(data.getNodeName() + "_" + index);
+        return createBackend(data);
+    }
+
     @Override
     public synchronized IBackend createBackend(final BackendData data) {
         ErlLogger.debug("Create backend " + data.getNodeName());
@@ -12,6 +12,7 @@ package org.erlide.backend.internal;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -22,7 +23,11 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtension;
 import org.eclipse.core.runtime.IExtensionPoint;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.debug.core.DebugPlugin;
 import org.eclipse.debug.core.ILaunch;
 import org.eclipse.jdt.annotation.NonNull;
@@ -55,6 +60,9 @@ import com.google.common.collect.Sets;
 
 public final class BackendManager implements IBackendManager {
 
+    // extra build backends are stopped when unused for this long
+    private static final long POOL_IDLE_TIME = 5 * 60 * 1000L;
+
     public enum BackendEvent {
         ADDED, REMOVED, MODULE_LOADED
     }
@@ -62,6 +70,15 @@ public final class BackendManager implements IBackendManager {
     private IBackend ideBackend;
     private final Map<IProject, Set<IBackend>> executionBackends;
     private final Map<String, IBackend> buildBackends;
+    // extra build backends, by runtime version
+    private final Map<String, List<IBackend>> buildPools;
+    // builds that are using the pool, by runtime version
+    private final Map<String, Integer> poolUsers;
+    // held while a pool grows or shrinks
+    private final Object poolLock = new Object();
+    // numbers the extra backends, so that their node names are unique
+    private int poolIndex;
+    private final Job poolReaper;
     final List<IBackendListener> listeners;
     private final Map<Bundle, ICodeBundle> codeBundles;
 
@@ -75,6 +92,8 @@ public final class BackendManager implements IBackendManager {
         ideBackend = null;
         executionBackends = Maps.newHashMap();
         buildBackends = Maps.newHashMap();
+        buildPools = Maps.newHashMap();
+        poolUsers = Maps.newHashMap();
         allBackends = Sets.newHashSet();
         listeners = Lists.newArrayList();
         codeBundles = Maps.newHashMap();
@@ -83,6 +102,15 @@ public final class BackendManager implements IBackendManager {
 
         launchListener = new BackendManagerLaunchListener(this,
                 DebugPlugin.getDefault().getLaunchManager());
+
+        poolReaper = new Job("Stopping idle build backends") {
+            @Override
+            protected IStatus run(final IProgressMonitor monitor) {
+                stopIdlePools();
+                return Status.OK_STATUS;
+            }
+        };
+        poolReaper.setSystem(true);
     }
 
     @Override
@@ -119,6 +147,121 @@ public final class BackendManager implements IBackendManager {
         return b;
     }
 
+    @Override
+    public List<IBackend> getBuildBackends(@NonNull final IErlProject project,
+            final int count) {
+        final RuntimeInfo info = project.getRuntimeInfo();
+        final String version = info == null ? null : info.getVersion().asMajor()
+                .toString();
+        if (version != null) {
+            // counted before anything can fail, releaseBuildBackends undoes it
+            synchronized (this) {
+                final Integer users = poolUsers.get(version);
+                poolUsers.put(version, users == null ? 1 : users + 1);
+            }
+        }
+        try {
+            final List<IBackend> result = Lists.newArrayList();
+            final IBackend first = getBuildBackend(project);
+            if (first == null) {
+                return result;
+            }
+            result.add(first);
+            if (version == null || count <= 1) {
+                return result;
+            }
+            // starting a backend takes a while, don't hold the manager meanwhile
+            synchronized (poolLock) {
+                final List<IBackend> started = Lists.newArrayList();
+                try {
+                    int size;
+                    synchronized (this) {
+                        size = getPool(version).size();
+                    }
+                    while (size + started.size() < count - 1) {
+                        poolIndex++;
+                        started.add(factory.createBuildBackend(info, poolIndex));
+                    }
+                } finally {
+                    // keep what did start, the reaper stops it when idle
+                    synchronized (this) {
+                        getPool(version).addAll(started);
+                    }
+                    for (final IBackend b : started) {
+                        addBackend(b);
+                        notifyBackendChange(b, BackendEvent.ADDED, null, null);
+                    }
+                }
+                synchronized (this) {
+                    final List<IBackend> pool = getPool(version);
+                    result.addAll(pool.subList(0, Math.min(count - 1, pool.size())));
+                }
+            }
+            return result;
+        } catch (final RuntimeException e) {
+            releaseBuildBackends(project);
+            throw e;
+        }
+    }
+
+    private List<IBackend> getPool(final String version) {
+        List<IBackend> pool = buildPools.get(version);
+        if (pool == null) {
+            pool = Lists.newArrayList();
+            buildPools.put(version, pool);
+        }
+        return pool;
+    }
+
+    @Override
+    public void releaseBuildBackends(@NonNull final IErlProject project) {
+        final RuntimeInfo info = project.getRuntimeInfo();
+        if (info == null) {
+            return;
+        }
+        final String version = info.getVersion().asMajor().toString();
+        synchronized (this) {
+            final Integer users = poolUsers.get(version);
+            if (users == null) {
+                return;
+            }
+            if (users > 1) {
+                poolUsers.put(version, users - 1);
+                return;
+            }
+            poolUsers.remove(version);
+            if (!buildPools.containsKey(version)) {
+                return;
+            }
+        }
+        poolReaper.cancel();
+        poolReaper.schedule(POOL_IDLE_TIME);
+    }
+
+    /**
+     * Stops the extra build backends of the runtimes that no build is using.
+     */
+    void stopIdlePools() {
+        final List<IBackend> idle = Lists.newArrayList();
+        synchronized (poolLock) {
+            synchronized (this) {
+                final Iterator<Entry<String, List<IBackend>>> it = buildPools
+                        .entrySet().iterator();
+                while (it.hasNext()) {
+                    final Entry<String, List<IBackend>> entry = it.next();
+                    if (!poolUsers.containsKey(entry.getKey())) {
+                        idle.addAll(entry.getValue());
+                        it.remove();
+                    }
+                }
+            }
+        }
+        for (final IBackend b : idle) {
+            ErlLogger.debug("Stop idle build backend " + b.getName());
+            b.dispose();
+        }
+    }
+
     @Override
     public synchronized IBackend getIdeBackend() {
         if (ideBackend == null) {
@@ -359,9 +502,14 @@ public final class BackendManager implements IBackendManager {
 
     @Override
     public void dispose() {
+        poolReaper.cancel();
         synchronized (this) {
             final Collection<IBackend> bb = Lists.newArrayList(buildBackends.values());
             buildBackends.clear();
+            for (final List<IBackend> pool : buildPools.values()) {
+                bb.addAll(pool);
+            }
+            buildPools.clear();
             for (final IBackend b : bb) {
                 b.dispose();
             }
@@ -404,6 +552,9 @@ public final class BackendManager implements IBackendManager {
         if (buildBackends.values().contains(backend)) {
             buildBackends.values().remove(backend);
         }
+        for (final List<IBackend> pool : buildPools.values()) {
+            pool.remove(backend);
+        }
     }
 
     @Override
@@ -0,0 +1,65 @@
+package org.erlide.core.internal.builder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class WorkQueuesTest {
+
+    @Test
+    public void workersTakeTheirOwnShareFirst() {
+        final WorkQueues<Integer> queues = new WorkQueues<>(Arrays.asList(0, 1, 2, 3),
+                2);
+        assertThat(queues.next(0), is(0));
+        assertThat(queues.next(1), is(1));
+        assertThat(queues.next(0), is(2));
+        assertThat(queues.next(1), is(3));
+        assertThat(queues.isEmpty(), is(true));
+        assertThat(queues.next(0), is(nullValue()));
+        assertThat(queues.getStolen(), is(0));
+    }
+
+    @Test
+    public void idleWorkerStealsFromTheLongestQueue() {
+        final WorkQueues<Integer> queues = new WorkQueues<>(Arrays.asList(0, 1, 2, 3,
+                4, 5), 3);
+        // worker 2 is done with its share
+        assertThat(queues.next(2), is(2));
+        assertThat(queues.next(2), is(5));
+        assertThat(queues.next(0), is(0));
+        // steals the last item of worker 1
+        assertThat(queues.next(2), is(4));
+        assertThat(queues.getStolen(), is(1));
+    }
+
+    @Test
+    public void allWorkIsHandedOutOnce() {
+        final List<Integer> work = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            work.add(i);
+        }
+        final WorkQueues<Integer> queues = new WorkQueues<>(work, 4);
+        final List<Integer> done = Lists.newArrayList();
+        while (!queues.isEmpty()) {
+            // worker 3 is much faster than the others
+            done.add(queues.next(3));
+            done.add(queues.next(3));
+            done.add(queues.next(3));
+            if (!queues.isEmpty()) {
+                done.add(queues.next(done.size() % 3));
+            }
+        }
+        done.removeAll(Collections.singleton(null));
+        assertThat(done, containsInAnyOrder(work.toArray(new Integer[work.size()])));
+    }
+
+}
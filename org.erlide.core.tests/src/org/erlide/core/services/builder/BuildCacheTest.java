@@ -0,0 +1,79 @@
+package org.erlide.core.services.builder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+
+import org.erlide.core.builder.BuildCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class BuildCacheTest {
+
+    private File dir;
+    private BuildCache cache;
+
+    @Before
+    public void setUp() {
+        dir = Files.createTempDir();
+        cache = new BuildCache(new File(dir, "cache"));
+    }
+
+    @After
+    public void tearDown() {
+        for (final File f : Files.fileTreeTraverser().postOrderTraversal(dir)) {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void restoresBeamAndMessages() throws Exception {
+        final File beam = new File(dir, "m.beam");
+        Files.write("beam code", beam, Charsets.UTF_8);
+        final OtpErlangList messages = new OtpErlangList(new OtpErlangString(
+                "warning"));
+        cache.store("k", result("ok", messages, beam));
+        beam.delete();
+
+        final File restoredBeam = new File(dir, "r.beam");
+        final OtpErlangObject restored = cache.restore("k", restoredBeam);
+        assertThat(restored, is((OtpErlangObject) result("ok", messages, restoredBeam)));
+        assertThat(Files.toString(restoredBeam, Charsets.UTF_8), is("beam code"));
+    }
+
+    @Test
+    public void restoresErrors() throws Exception {
+        final OtpErlangList messages = new OtpErlangList(new OtpErlangString("error"));
+        cache.store("k", result("error", messages, null));
+
+        final File beam = new File(dir, "r.beam");
+        final OtpErlangObject restored = cache.restore("k", beam);
+        assertThat(restored, is((OtpErlangObject) result("error", messages, null)));
+        assertThat(beam.exists(), is(false));
+    }
+
+    @Test
+    public void missingEntry() {
+        assertThat(cache.restore("none", new File(dir, "r.beam")), is(nullValue()));
+    }
+
+    private static OtpErlangTuple result(final String status,
+            final OtpErlangList messages, final File beam) {
+        final OtpErlangList beams = beam == null ? new OtpErlangList()
+                : new OtpErlangList(new OtpErlangString(beam.getPath()));
+        return new OtpErlangTuple(new OtpErlangObject[] { new OtpErlangAtom(status),
+                messages, beams });
+    }
+
+}
@@ -0,0 +1,339 @@
+package org.erlide.core.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.erlide.core.ErlangPlugin;
+import org.erlide.engine.model.builder.IncludeGraph;
+import org.erlide.runtime.rpc.IOtpRpc;
+import org.erlide.util.ErlLogger;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangDecodeException;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpOutputStream;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Compile results kept on disk, so that a module whose inputs haven't changed
+ * is restored instead of compiled again, for example after switching branches
+ * back and forth or touching files.
+ *
+ * <p>
+ * Entries are keyed on a hash of what the builder knows of the compiler's
+ * inputs: the source, the headers it includes (directly or not), the include
+ * directories, the compiler options and the backend's OTP version. Modules
+ * whose output depends on more than that aren't cached: those including a
+ * header that can't be found next to them, in the include directories or in
+ * the project (like those of other applications included with include_lib),
+ * and those that use a parse transform. An entry holds the beam and the
+ * compiler's messages, from which the problem markers are recreated.
+ * </p>
+ *
+ * <p>
+ * The cache lives in the core plugin's state location and keeps the
+ * <code>erlide.builder.cache.size</code> (default 5000) most recently used
+ * entries. It can be turned off with <code>-Derlide.builder.cache=false</code>.
+ * </p>
+ */
+public class BuildCache {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(
+            "erlide.builder.cache", "true"));
+    private static final int MAX_ENTRIES = Integer.getInteger(
+            "erlide.builder.cache.size", 5000);
+    // bump when the key or the entry format change
+    private static final String VERSION = "1";
+    private static final String BEAM = ".beam";
+    private static final String RESULT = ".result";
+    private static final String PARSE_TRANSFORM = "parse_transform";
+
+    private static BuildCache instance;
+
+    private final File dir;
+    // keys of the compilations that are running, to store their results
+    private final Map<IResource, String> compiling = new ConcurrentHashMap<>();
+    private final Map<IOtpRpc, String> runtimeVersions = Collections
+            .synchronizedMap(new WeakHashMap<IOtpRpc, String>());
+    private final AtomicInteger stored = new AtomicInteger();
+
+    public static synchronized BuildCache getInstance() {
+        if (instance == null) {
+            instance = new BuildCache(ErlangPlugin.getDefault().getStateLocation()
+                    .append("buildcache").toFile());
+        }
+        return instance;
+    }
+
+    public BuildCache(final File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @return the key of the compilation of source, whose contents are given,
+     *         or null if it can't be cached.
+     */
+    public String key(final IResource source, final byte[] contents,
+            final Collection<IPath> includeDirs, final OtpErlangList compilerOptions,
+            final IOtpRpc backend) {
+        if (!ENABLED || source.getLocation() == null) {
+            return null;
+        }
+        final String options = compilerOptions.toString();
+        if (options.contains(PARSE_TRANSFORM)) {
+            return null;
+        }
+        final String runtimeVersion = getRuntimeVersion(backend);
+        if (runtimeVersion == null) {
+            return null;
+        }
+        final List<File> dirs = Lists.newArrayList();
+        for (final IPath inc : includeDirs) {
+            dirs.add(inc.toFile());
+        }
+        final File file = source.getLocation().toFile();
+        final Hasher hasher = Hashing.sha1().newHasher();
+        putString(hasher, VERSION);
+        putString(hasher, runtimeVersion);
+        putString(hasher, file.getPath());
+        putString(hasher, options);
+        putString(hasher, dirs.toString());
+        try {
+            putBytes(hasher, contents);
+            if (!putIncludes(hasher, contents, file.getParentFile(), dirs,
+                    source.getProject(), Sets.<String> newHashSet())) {
+                return null;
+            }
+        } catch (final IOException e) {
+            return null;
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Look up a compilation. On a hit, the beam is written to the given file
+     * and the compile result is returned, in the same form as
+     * erlide_builder:compile returns it.
+     */
+    public OtpErlangObject restore(final String key, final File beam) {
+        final File resultFile = new File(dir, key + RESULT);
+        final File beamFile = new File(dir, key + BEAM);
+        if (!resultFile.exists()) {
+            return null;
+        }
+        try {
+            final OtpErlangTuple entry = (OtpErlangTuple) new OtpInputStream(
+                    Files.toByteArray(resultFile)).read_any();
+            final OtpErlangAtom status = (OtpErlangAtom) entry.elementAt(0);
+            OtpErlangList beams = new OtpErlangList();
+            if ("ok".equals(status.atomValue())) {
+                Files.copy(beamFile, beam);
+                beams = new OtpErlangList(new OtpErlangString(beam.getPath()));
+            }
+            final long now = System.currentTimeMillis();
+            resultFile.setLastModified(now);
+            beamFile.setLastModified(now);
+            return new OtpErlangTuple(new OtpErlangObject[] { status,
+                    entry.elementAt(1), beams });
+        } catch (final IOException | OtpErlangDecodeException | ClassCastException e) {
+            ErlLogger.warn("Bad build cache entry %s: %s", key, e.getMessage());
+            resultFile.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Store the result of a compilation, and the beam it refers to.
+     */
+    public void store(final String key, final OtpErlangObject result) {
+        if (!(result instanceof OtpErlangTuple)) {
+            return;
+        }
+        final OtpErlangTuple t = (OtpErlangTuple) result;
+        if (t.arity() != 3 || !(t.elementAt(0) instanceof OtpErlangAtom)) {
+            return;
+        }
+        final OtpErlangAtom status = (OtpErlangAtom) t.elementAt(0);
+        try {
+            dir.mkdirs();
+            if ("ok".equals(status.atomValue())) {
+                final OtpErlangList beams = (OtpErlangList) t.elementAt(2);
+                if (beams.arity() != 1) {
+                    return;
+                }
+                final File beam = new File(
+                        ((OtpErlangString) beams.elementAt(0)).stringValue());
+                write(new File(dir, key + BEAM), Files.toByteArray(beam));
+            }
+            final OtpErlangTuple entry = new OtpErlangTuple(new OtpErlangObject[] {
+                    status, t.elementAt(1) });
+            write(new File(dir, key + RESULT), new OtpOutputStream(entry).toByteArray());
+            stored.incrementAndGet();
+        } catch (final IOException | ClassCastException e) {
+            ErlLogger.warn("Could not store build cache entry %s: %s", key,
+                    e.getMessage());
+        }
+    }
+
+    void compiling(final IResource source, final String key) {
+        compiling.put(source, key);
+    }
+
+    /**
+     * @return the key of the compilation of source that has finished, if any.
+     */
+    String compiled(final IResource source) {
+        return compiling.remove(source);
+    }
+
+    /**
+     * Drop the least recently used entries, if there are too many.
+     */
+    public void trim() {
+        if (stored.getAndSet(0) == 0) {
+            return;
+        }
+        final File[] results = dir.listFiles();
+        if (results == null) {
+            return;
+        }
+        final List<File> entries = Lists.newArrayList();
+        for (final File f : results) {
+            if (f.getName().endsWith(RESULT)) {
+                entries.add(f);
+            }
+        }
+        if (entries.size() <= MAX_ENTRIES) {
+            return;
+        }
+        final File[] sorted = entries.toArray(new File[entries.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(final File f1, final File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (int i = 0; i < sorted.length - MAX_ENTRIES; i++) {
+            final String name = sorted[i].getName();
+            sorted[i].delete();
+            new File(dir, name.substring(0, name.length() - RESULT.length()) + BEAM)
+                    .delete();
+        }
+    }
+
+    private String getRuntimeVersion(final IOtpRpc backend) {
+        String version = runtimeVersions.get(backend);
+        if (version == null) {
+            try {
+                version = backend.call("erlang", "system_info", "a", "otp_release")
+                        + " " + backend.call("erlang", "system_info", "a", "version");
+                runtimeVersions.put(backend, version);
+            } catch (final Exception e) {
+                ErlLogger.debug(e);
+                return null;
+            }
+        }
+        return version;
+    }
+
+    /**
+     * @return false if the text, or a header it includes, uses a parse
+     *         transform or includes a header that can't be found.
+     */
+    private boolean putIncludes(final Hasher hasher, final byte[] source,
+            final File sourceDir, final List<File> includeDirs, final IProject project,
+            final Set<String> seen) throws IOException {
+        // include attributes are ASCII, whatever the file's encoding
+        final String text = new String(source, Charsets.ISO_8859_1);
+        if (text.contains(PARSE_TRANSFORM)) {
+            return false;
+        }
+        for (final String name : BuilderHelper.readIncludes(text)) {
+            putString(hasher, name);
+            final File header = findHeader(name, sourceDir, includeDirs, project);
+            if (header == null) {
+                return false;
+            }
+            putString(hasher, header.getPath());
+            if (seen.add(header.getPath())) {
+                final byte[] bytes = Files.toByteArray(header);
+                putBytes(hasher, bytes);
+                if (!putIncludes(hasher, bytes, header.getParentFile(), includeDirs,
+                        project, seen)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private File findHeader(final String name, final File sourceDir,
+            final List<File> includeDirs, final IProject project) {
+        final File absolute = new File(name);
+        if (absolute.isAbsolute()) {
+            return absolute.isFile() ? absolute : null;
+        }
+        final File local = new File(sourceDir, name);
+        if (local.isFile()) {
+            return local;
+        }
+        for (final File inc : includeDirs) {
+            final File f = new File(inc, name);
+            if (f.isFile()) {
+                return f;
+            }
+        }
+        final IPath path = IncludeGraph.get(project).findHeader(name);
+        if (path != null) {
+            final IResource header = project.findMember(path);
+            if (header != null && header.getLocation() != null) {
+                return header.getLocation().toFile();
+            }
+        }
+        return null;
+    }
+
+    private static void putString(final Hasher hasher, final String s) {
+        putBytes(hasher, s.getBytes(Charsets.UTF_8));
+    }
+
+    private static void putBytes(final Hasher hasher, final byte[] bytes) {
+        hasher.putInt(bytes.length).putBytes(bytes);
+    }
+
+    private static void write(final File file, final byte[] bytes) throws IOException {
+        // readers never see a partly written file
+        final File tmp = new File(file.getPath() + ".tmp");
+        Files.write(bytes, tmp);
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("could not rename " + tmp);
+            }
+        }
+    }
+
+}
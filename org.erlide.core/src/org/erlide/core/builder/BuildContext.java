@@ -0,0 +1,84 @@
+package org.erlide.core.builder;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.annotation.NonNull;
+
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * What the compiles of a build need to know about the project: its include
+ * directories (also as the term that is sent to the compiler), its output
+ * directory and the compiler options. It is computed once at the start of a
+ * build and shared by all its compiles, instead of asking the model for each
+ * module. Later changes to the project's settings are seen by the next build.
+ */
+public final class BuildContext {
+
+    private final @NonNull IProject project;
+    private final List<IPath> includeDirs;
+    private final OtpErlangList includeDirsTerm;
+    private final IPath outputDir;
+    private final String outputLocation;
+    private final OtpErlangList compilerOptions;
+
+    /**
+     * @param outputDir
+     *            the project relative output directory
+     */
+    public BuildContext(final @NonNull IProject project,
+            final Collection<IPath> includeDirs, final IPath outputDir,
+            final OtpErlangList compilerOptions) {
+        this.project = project;
+        this.includeDirs = ImmutableList.copyOf(includeDirs);
+        final OtpErlangObject[] incs = new OtpErlangObject[this.includeDirs.size()];
+        int i = 0;
+        for (final IPath inc : this.includeDirs) {
+            incs[i++] = new OtpErlangString(inc.toString());
+        }
+        includeDirsTerm = new OtpErlangList(incs);
+        this.outputDir = outputDir;
+        outputLocation = project.getLocation().append(outputDir).toString();
+        this.compilerOptions = compilerOptions;
+    }
+
+    public @NonNull IProject getProject() {
+        return project;
+    }
+
+    public List<IPath> getIncludeDirs() {
+        return includeDirs;
+    }
+
+    /**
+     * @return the include directories as a list of strings, ready to be sent
+     */
+    public OtpErlangList getIncludeDirsTerm() {
+        return includeDirsTerm;
+    }
+
+    /**
+     * @return the project relative output directory
+     */
+    public IPath getOutputDir() {
+        return outputDir;
+    }
+
+    /**
+     * @return the absolute path of the output directory
+     */
+    public String getOutputLocation() {
+        return outputLocation;
+    }
+
+    public OtpErlangList getCompilerOptions() {
+        return compilerOptions;
+    }
+
+}
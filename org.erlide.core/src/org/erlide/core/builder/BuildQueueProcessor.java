@@ -31,8 +31,7 @@ public class BuildQueueProcessor extends Job {
         BuildWorkerInfo work = null;
         work = queue.poll();
         while (work != null) {
-            MarkerUtils.removeTaskMarkers(work.resource);
-            MarkerUtils.createTaskMarkers(work.resource);
+            MarkerUtils.createTaskMarkers(work.resource, work.contents);
             work = queue.poll();
         }
         return Status.OK_STATUS;
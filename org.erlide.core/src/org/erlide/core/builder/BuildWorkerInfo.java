@@ -7,10 +7,18 @@ public class BuildWorkerInfo {
 
     public IResource resource;
     public IProject project;
+    // the resource's contents as the builder read them, or null
+    public byte[] contents;
 
     public BuildWorkerInfo(final IProject project, final IResource resource) {
+        this(project, resource, null);
+    }
+
+    public BuildWorkerInfo(final IProject project, final IResource resource,
+            final byte[] contents) {
         this.project = project;
         this.resource = resource;
+        this.contents = contents;
     }
 
 }
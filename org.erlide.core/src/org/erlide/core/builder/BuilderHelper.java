@@ -9,15 +9,22 @@
 package org.erlide.core.builder;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.eclipse.core.filesystem.URIUtil;
 import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IPathVariableManager;
@@ -42,6 +49,7 @@ import org.erlide.core.ErlangPlugin;
 import org.erlide.engine.ErlangEngine;
 import org.erlide.engine.MarkerUtils;
 import org.erlide.engine.model.ErlModelException;
+import org.erlide.engine.model.builder.IncludeGraph;
 import org.erlide.engine.model.erlang.ErlangIncludeFile;
 import org.erlide.engine.model.erlang.SourceKind;
 import org.erlide.engine.model.root.ErlangProjectProperties;
@@ -64,6 +72,9 @@ import com.ericsson.otp.erlang.OtpErlangTuple;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Futures;
 
 public final class BuilderHelper {
 
@@ -72,6 +83,11 @@ public final class BuilderHelper {
     private static final String BEAM = "beam";
     private static final String YRL = "yrl";
     private static final String ERLIDE_BUILDER = "erlide_builder";
+    private static final Pattern INCLUDE_ATTRIBUTE = Pattern.compile(
+            "^\\s*-\\s*include(?:_lib)?\\s*\\(\\s*\"([^\"]+)\"", Pattern.MULTILINE);
+
+    // modules waiting to be loaded, when loading is batched
+    private List<String> loadBatch;
 
     public BuilderHelper() {
     }
@@ -96,6 +112,26 @@ public final class BuilderHelper {
         return includeDirs;
     }
 
+    /**
+     * Look up what the compiles of a build need to know about the project, once
+     * for the whole build.
+     */
+    public BuildContext createBuildContext(final @NonNull IProject project,
+            final OtpErlangList compilerOptions) {
+        final IErlProject erlProject = ErlangEngine.getInstance().getModel()
+                .getErlangProject(project);
+        return createBuildContext(project, erlProject.getProperties().getOutputDir(),
+                compilerOptions);
+    }
+
+    public BuildContext createBuildContext(final @NonNull IProject project,
+            final IPath outputDir, final OtpErlangList compilerOptions) {
+        final BuildContext context = new BuildContext(project,
+                getAllIncludeDirs(project), outputDir, compilerOptions);
+        ensureDirExists(context.getOutputLocation());
+        return context;
+    }
+
     public Collection<IPath> getIncludeDirs(final IProject project,
             final Collection<IPath> includeDirs) {
         final IErlProject erlProject = ErlangEngine.getInstance().getModel()
@@ -142,6 +178,16 @@ public final class BuilderHelper {
 
     public void addDependents(final IResource resource, final IProject my_project,
             final Set<BuildResource> result) throws ErlModelException {
+        final IncludeGraph graph = getIncludeGraph(my_project);
+        if (graph.isComplete()) {
+            for (final IPath path : graph.getDependents(resource.getName(), true)) {
+                final IResource dependent = my_project.findMember(path);
+                if (dependent != null && ERL.equals(dependent.getFileExtension())) {
+                    result.add(new BuildResource(dependent));
+                }
+            }
+            return;
+        }
         final IErlProject eprj = ErlangEngine.getInstance().getModel()
                 .findProject(my_project);
         if (eprj != null) {
@@ -161,10 +207,74 @@ public final class BuilderHelper {
         }
     }
 
+    /**
+     * The project's include graph, restored from the previous session if this
+     * is the first time it is needed.
+     */
+    public static IncludeGraph getIncludeGraph(final IProject project) {
+        final IncludeGraph graph = IncludeGraph.get(project);
+        try {
+            graph.restore(getIncludeGraphFile(project));
+        } catch (final IOException e) {
+            ErlLogger.warn(e);
+        }
+        return graph;
+    }
+
+    public static void saveIncludeGraph(final IProject project) {
+        try {
+            IncludeGraph.get(project).save(getIncludeGraphFile(project));
+        } catch (final IOException e) {
+            ErlLogger.warn(e);
+        }
+    }
+
+    private static File getIncludeGraphFile(final IProject project) {
+        return ErlangPlugin.getDefault().getStateLocation().append("includes")
+                .append(project.getName()).toFile();
+    }
+
+    /**
+     * Record the files included by an erl or hrl file in the include graph.
+     * The source is scanned for include attributes, without parsing it.
+     */
+    void updateIncludes(final IResource resource) {
+        if (!(resource instanceof IFile)) {
+            return;
+        }
+        final IFile file = (IFile) resource;
+        final List<String> incs;
+        try (Reader reader = new InputStreamReader(file.getContents(),
+                file.getCharset())) {
+            incs = readIncludes(CharStreams.toString(reader));
+        } catch (final CoreException | IOException e) {
+            ErlLogger.warn(e);
+            return;
+        }
+        IncludeGraph.get(resource.getProject()).setIncludes(
+                resource.getProjectRelativePath(), incs);
+    }
+
+    /**
+     * @return the file names in the include and include_lib attributes of the
+     *         source text.
+     */
+    static List<String> readIncludes(final CharSequence text) {
+        final List<String> incs = Lists.newArrayList();
+        final Matcher m = INCLUDE_ATTRIBUTE.matcher(text);
+        while (m.find()) {
+            incs.add(m.group(1));
+        }
+        return incs;
+    }
+
     public Set<BuildResource> getAffectedResources(final IProject project,
             final BuildNotifier notifier) throws CoreException {
         final Set<BuildResource> result = Sets.newHashSet();
+        final IncludeGraph graph = getIncludeGraph(project);
+        graph.clear();
         project.accept(new BuilderVisitor(result, notifier, this));
+        graph.setComplete();
         return result;
     }
 
@@ -255,12 +365,7 @@ public final class BuilderHelper {
         boolean shouldCompile = beam == null;
 
         if (beam != null) {
-            final IErlProject eprj = ErlangEngine.getInstance().getModel()
-                    .findProject(project);
-            if (eprj != null) {
-                shouldCompile = shouldCompileModule(project, source, beam, shouldCompile,
-                        eprj);
-            }
+            shouldCompile = shouldCompileModule(project, source, beam, shouldCompile);
         }
 
         if (beam != null) {
@@ -270,23 +375,29 @@ public final class BuilderHelper {
     }
 
     private boolean shouldCompileModule(final IProject project, final IResource source,
-            final IResource beam, final boolean shouldCompile0, final IErlProject eprj)
-            throws ErlModelException {
-        boolean shouldCompile = shouldCompile0;
-        final IErlModule m = eprj.getModule(source.getName());
-        if (m != null) {
-            final Collection<ErlangIncludeFile> incs = m.getIncludeFiles();
-            for (final ErlangIncludeFile ifile : incs) {
-                final IResource rifile = ResourceUtil.findResourceByName(project,
-                        ifile.getFilename());
-                if (rifile != null
-                        && rifile.getLocalTimeStamp() > beam.getLocalTimeStamp()) {
-                    shouldCompile = true;
-                    break;
-                }
+            final IResource beam, final boolean shouldCompile0) {
+        final IncludeGraph graph = getIncludeGraph(project);
+        Collection<String> incs = graph.getIncludes(source.getProjectRelativePath());
+        if (incs == null) {
+            updateIncludes(source);
+            incs = graph.getIncludes(source.getProjectRelativePath());
+            if (incs == null) {
+                return shouldCompile0;
             }
         }
-        return shouldCompile;
+        for (final String inc : incs) {
+            final IPath header = graph.findHeader(inc);
+            IResource rifile = null;
+            if (header != null) {
+                rifile = project.findMember(header);
+            } else if (!graph.isComplete()) {
+                rifile = ResourceUtil.findResourceByName(project, inc);
+            }
+            if (rifile != null && rifile.getLocalTimeStamp() > beam.getLocalTimeStamp()) {
+                return true;
+            }
+        }
+        return shouldCompile0;
     }
 
     public void refreshOutputDir(final IProject project) throws CoreException {
@@ -299,19 +410,28 @@ public final class BuilderHelper {
         }
     }
 
-    public void completeCompile(final @NonNull IProject project, final IResource source,
-            final OtpErlangObject compilationResult, final IOtpRpc backend,
-            final OtpErlangList compilerOptions) {
+    public void completeCompile(final BuildContext context, final IResource source,
+            final OtpErlangObject compilationResult, final IOtpRpc backend) {
+        final IProject project = context.getProject();
         if (compilationResult == null) {
+            BuildCache.getInstance().compiled(source);
             MarkerUtils.createProblemMarker(source, null, "Could not compile file", 0,
                     IMarker.SEVERITY_ERROR);
             return;
         }
+        final String key = BuildCache.getInstance().compiled(source);
+        if (key != null) {
+            BuildCache.getInstance().store(key, compilationResult);
+        }
         final OtpErlangTuple t = (OtpErlangTuple) compilationResult;
 
         if ("ok".equals(((OtpErlangAtom) t.elementAt(0)).atomValue())) {
             final String beamf = source.getFullPath().removeFileExtension().lastSegment();
-            BuilderHelper.loadModule(project, beamf);
+            if (loadBatch != null) {
+                loadBatch.add(beamf);
+            } else {
+                BuilderHelper.loadModule(project, beamf);
+            }
             refreshDirs(project, t.elementAt(2));
         }
 
@@ -323,7 +443,7 @@ public final class BuilderHelper {
             ErlLogger.warn("bad result from builder: %s", t);
         }
 
-        completeCompileForYrl(project, source, backend, compilerOptions);
+        completeCompileForYrl(context, source, backend);
     }
 
     private void refreshDirs(final IProject project, final OtpErlangObject element) {
@@ -366,22 +486,18 @@ public final class BuilderHelper {
         }
     }
 
-    private void completeCompileForYrl(final IProject project, final IResource source,
-            final IOtpRpc backend, final OtpErlangList compilerOptions) {
+    private void completeCompileForYrl(final BuildContext context,
+            final IResource source, final IOtpRpc backend) {
         final IPath erl = getErlForYrl(source);
         if (erl != null) {
             try {
                 source.getParent().refreshLocal(IResource.DEPTH_ONE, null);
-                final IResource br = project.findMember(erl);
+                final IResource br = context.getProject().findMember(erl);
                 if (br != null) {
                     br.setDerived(true, null);
                     final BuildResource bbr = new BuildResource(br);
                     // br.touch() doesn't work...
-                    final IErlProject erlProject = ErlangEngine.getInstance().getModel()
-                            .getErlangProject(project);
-                    compileErl(project, bbr,
-                            erlProject.getProperties().getOutputDir().toString(), backend,
-                            compilerOptions);
+                    compileErl(context, bbr, backend);
                 }
             } catch (final CoreException e) {
                 ErlLogger.warn(e);
@@ -389,10 +505,9 @@ public final class BuilderHelper {
         }
     }
 
-    public RpcFuture startCompileErl(final IProject project, final BuildResource bres,
-            final String outputDir0, final IOtpRpc backend,
-            final OtpErlangList compilerOptions, final boolean force) {
-        final IPath projectPath = project.getLocation();
+    public RpcFuture startCompileErl(final BuildContext context,
+            final BuildResource bres, final IOtpRpc backend, final boolean force) {
+        final IProject project = context.getProject();
         final IResource res = bres.getResource();
         final String s = res.getFileExtension();
         if (!ERL.equals(s)) {
@@ -401,13 +516,12 @@ public final class BuilderHelper {
 
         MarkerUtils.deleteMarkers(res);
 
-        String outputDir;
-        outputDir = getRealOutputDir(bres, outputDir0, projectPath);
-
-        final Collection<IPath> includeDirs = getAllIncludeDirs(project);
+        final String outputDir = getRealOutputDir(bres, context);
+        final List<IPath> includeDirs = context.getIncludeDirs();
+        final OtpErlangList compilerOptions = context.getCompilerOptions();
 
         // delete beam file
-        final IPath beamPath = getBeamForErl(res);
+        final IPath beamPath = getBeamForErl(context.getOutputDir(), res);
         final IResource beam = project.findMember(beamPath);
 
         try {
@@ -425,9 +539,32 @@ public final class BuilderHelper {
                     ErlLogger.debug("compiling %s", res.getName());
                 }
 
-                createTaskMarkers(project, res);
+                final byte[] source = readSource(res);
+                createTaskMarkers(project, res, source);
+                final BuildCache cache = BuildCache.getInstance();
+                final String key = source == null ? null : cache.key(res, source,
+                        includeDirs, compilerOptions, backend);
+                // full builds and explicit compiles really compile, the
+                // result is still stored
+                if (key != null && !force) {
+                    final String module = res.getFullPath().removeFileExtension()
+                            .lastSegment();
+                    final OtpErlangObject cached = cache.restore(key, new File(
+                            outputDir, module + "." + BEAM));
+                    if (cached != null) {
+                        if (isDebugging()) {
+                            ErlLogger.debug("restored %s from build cache",
+                                    res.getName());
+                        }
+                        return new RpcFuture(null, Futures.immediateFuture(cached),
+                                "build cache", false);
+                    }
+                }
+                if (key != null) {
+                    cache.compiling(res, key);
+                }
                 return BuilderHelper.compileErl(backend, res.getLocation(), outputDir,
-                        includeDirs, compilerOptions);
+                        context.getIncludeDirsTerm(), compilerOptions);
 
             }
             return null;
@@ -437,29 +574,38 @@ public final class BuilderHelper {
         }
     }
 
-    private String getRealOutputDir(final BuildResource bres, final String outputDir0,
-            final IPath projectPath) {
-        String outputDir;
+    private String getRealOutputDir(final BuildResource bres,
+            final BuildContext context) {
         final String bout = bres.getOutput();
         if (bout == null) {
-            outputDir = projectPath.append(outputDir0).toString();
-        } else {
-            outputDir = bout.startsWith("/") || bout.charAt(1) == ':' ? bout
-                    : projectPath.append(bout).toString();
+            // created with the context
+            return context.getOutputLocation();
         }
+        final String outputDir = bout.startsWith("/") || bout.charAt(1) == ':' ? bout
+                : context.getProject().getLocation().append(bout).toString();
         ensureDirExists(outputDir);
         return outputDir;
     }
 
-    private void createTaskMarkers(final IProject project, final IResource res) {
-        BuildQueueProcessor.getInstance().addWork(new BuildWorkerInfo(project, res));
+    private void createTaskMarkers(final IProject project, final IResource res,
+            final byte[] source) {
+        BuildQueueProcessor.getInstance().addWork(
+                new BuildWorkerInfo(project, res, source));
     }
 
-    private IPath getBeamForErl(final IResource source) {
-        final IErlProject erlProject = ErlangEngine.getInstance().getModel()
-                .getErlangProject(source.getProject());
-        IPath p = erlProject.getProperties().getOutputDir();
-        p = p.append(source.getName());
+    private static byte[] readSource(final IResource res) {
+        if (res.getLocation() == null) {
+            return null;
+        }
+        try {
+            return Files.toByteArray(res.getLocation().toFile());
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    private IPath getBeamForErl(final IPath outputDir, final IResource source) {
+        final IPath p = outputDir.append(source.getName());
         if (!ERL.equals(p.getFileExtension())) {
             return null;
         }
@@ -515,8 +661,13 @@ public final class BuilderHelper {
     public void compileErl(final @NonNull IProject project, final BuildResource resource,
             final String outputDir, final IOtpRpc b,
             final OtpErlangList compilerOptions) {
-        final RpcFuture res = startCompileErl(project, resource, outputDir, b,
-                compilerOptions, true);
+        compileErl(createBuildContext(project, new Path(outputDir), compilerOptions),
+                resource, b);
+    }
+
+    private void compileErl(final BuildContext context, final BuildResource resource,
+            final IOtpRpc b) {
+        final RpcFuture res = startCompileErl(context, resource, b, true);
         if (res == null) {
             ErlLogger.warn("error compiling erl file: "
                     + resource.getResource().getProjectRelativePath());
@@ -524,7 +675,7 @@ public final class BuilderHelper {
         }
         try {
             final OtpErlangObject result = res.checkedGet();
-            completeCompile(project, resource.getResource(), result, b, compilerOptions);
+            completeCompile(context, resource.getResource(), result, b);
         } catch (final RpcException e) {
             ErlLogger.warn(e);
         }
@@ -540,23 +691,19 @@ public final class BuilderHelper {
             return;
         }
         try {
-            completeCompile(project, resource.getResource(), res.checkedGet(), b,
-                    compilerOptions);
+            completeCompile(createBuildContext(project, compilerOptions),
+                    resource.getResource(), res.checkedGet(), b);
         } catch (final RpcException e) {
             ErlLogger.warn(e);
         }
     }
 
     public static RpcFuture compileErl(final IOtpRpc backend, final IPath fn,
-            final String outputdir, final Collection<IPath> includedirs,
+            final String outputdir, final OtpErlangList includedirs,
             final OtpErlangList compilerOptions) {
-        final List<String> incs = Lists.newArrayList();
-        for (final IPath p : includedirs) {
-            incs.add(p.toString());
-        }
         try {
-            return backend.async_call(ERLIDE_BUILDER, "compile", "sslsx", fn.toString(),
-                    outputdir, incs, compilerOptions);
+            return backend.async_call(ERLIDE_BUILDER, "compile", "ssxx", fn.toString(),
+                    outputdir, includedirs, compilerOptions);
         } catch (final Exception e) {
             ErlLogger.debug(e);
             return null;
@@ -574,33 +721,68 @@ public final class BuilderHelper {
     }
 
     public static void loadModule(final @NonNull IProject project, final String module) {
+        loadModules(project, Collections.singletonList(module));
+    }
+
+    /**
+     * Load compiled modules in the project's execution backends. Each beam is
+     * read once and they are all sent together to each backend.
+     */
+    public static void loadModules(final @NonNull IProject project,
+            final Collection<String> modules) {
         try {
             final IBackendManager backendManager = BackendCore.getBackendManager();
-            for (final IBackend b : backendManager.getExecutionBackends(project)) {
-                ErlLogger.debug(":: loading %s in %s", module, b.getName());
-
-                final IErlProject erlProject = ErlangEngine.getInstance().getModel()
-                        .findProject(project);
-                final IPath path = project.getLocation()
-                        .append(erlProject.getProperties().getOutputDir())
-                        .append(module + ".beam");
-
-                boolean ok = false;
-                final OtpErlangBinary bin = BeamUtil.getBeamBinary(module, path);
+            final Set<IBackend> backends = backendManager.getExecutionBackends(project);
+            if (backends.isEmpty()) {
+                return;
+            }
+            final IErlProject erlProject = ErlangEngine.getInstance().getModel()
+                    .findProject(project);
+            final IPath outputDir = project.getLocation().append(
+                    erlProject.getProperties().getOutputDir());
+            final Map<String, OtpErlangBinary> beams = Maps.newHashMap();
+            for (final String module : modules) {
+                final OtpErlangBinary bin = BeamUtil.getBeamBinary(module,
+                        outputDir.append(module + ".beam"));
                 if (bin != null) {
-                    ok = BeamLoader.loadBeam(b.getOtpRpc(), module, bin);
-                }
-                if (!ok) {
+                    beams.put(module, bin);
+                } else {
                     ErlLogger.error("Could not load %s", module);
                 }
-
-                backendManager.moduleLoaded(b, project, module);
+            }
+            for (final IBackend b : backends) {
+                ErlLogger.debug(":: loading %d module(s) in %s",
+                        Integer.valueOf(beams.size()), b.getName());
+                final Map<String, String> failed = BeamLoader.loadBeams(b.getOtpRpc(),
+                        beams);
+                for (final Entry<String, String> f : failed.entrySet()) {
+                    ErlLogger.error("Could not load %s: %s", f.getKey(), f.getValue());
+                }
+                for (final String module : modules) {
+                    backendManager.moduleLoaded(b, project, module);
+                }
             }
         } catch (final Exception e) {
             ErlLogger.debug(e);
         }
     }
 
+    /**
+     * Until {@link #loadBatch(IProject)} is called, keep the modules compiled
+     * by {@link #completeCompile} to load them all at once.
+     */
+    public void startLoadBatch() {
+        loadBatch = Lists.newArrayList();
+    }
+
+    public void loadBatch(final @NonNull IProject project) {
+        final List<String> modules = loadBatch;
+        loadBatch = null;
+        if (modules != null && !modules.isEmpty()) {
+            loadModules(project, modules);
+        }
+    }
+
     public static OtpErlangList getSourceClashes(final IOtpRpc backend,
             final String[] dirList) throws RpcException {
         final OtpErlangObject res = backend.call(ERLIDE_BUILDER, "source_clash", "ls",
@@ -714,9 +896,10 @@ public final class BuilderHelper {
                     return false;
                 }
             }
-            if (properties.getIncludeDirs().contains(path) && HRL.equals(ext)) {
+            if (HRL.equals(ext)) {
                 try {
-                    handleHrlFile(kind, resource, fullBuild);
+                    handleHrlFile(kind, resource, fullBuild, properties
+                            .getIncludeDirs().contains(path));
                 } catch (final ErlModelException e) {
                     ErlLogger.warn(e);
                 }
@@ -785,14 +968,26 @@ public final class BuilderHelper {
             }
         }
 
+        /**
+         * Headers are recorded in the include graph wherever they are, but only
+         * those in the include directories trigger a rebuild of their
+         * dependents.
+         */
         private void handleHrlFile(final int kind, final IResource resource,
-                final boolean fullBuild) throws ErlModelException {
+                final boolean fullBuild, final boolean inIncludeDir)
+                throws ErlModelException {
+            if (kind == IResourceDelta.REMOVED) {
+                getIncludeGraph(resource.getProject()).remove(
+                        resource.getProjectRelativePath());
+            } else {
+                helper.updateIncludes(resource);
+            }
             switch (kind) {
             case IResourceDelta.ADDED:
             case IResourceDelta.REMOVED:
             case IResourceDelta.CHANGED:
                 final int n = result.size();
-                if (!fullBuild) {
+                if (!fullBuild && inIncludeDir) {
                     helper.addDependents(resource, resource.getProject(), result);
                 }
                 notifier.worked(result.size() - n);
@@ -804,11 +999,14 @@ public final class BuilderHelper {
             switch (kind) {
             case IResourceDelta.ADDED:
             case IResourceDelta.CHANGED:
+                helper.updateIncludes(resource);
                 final BuildResource bres = new BuildResource(resource);
                 result.add(bres);
                 notifier.worked(1);
                 break;
             case IResourceDelta.REMOVED:
+                getIncludeGraph(resource.getProject()).remove(
+                        resource.getProjectRelativePath());
                 MarkerUtils.deleteMarkers(resource);
                 IPath beam = erlProject.getProperties().getOutputDir();
                 final IPath module = beam.append(resource.getName())
@@ -14,11 +14,10 @@ import static com.google.common.collect.Lists.newArrayList;
 
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.resources.IFolder;
@@ -36,6 +35,8 @@ import org.eclipse.osgi.util.NLS;
 import org.erlide.backend.BackendCore;
 import org.erlide.backend.api.BackendException;
 import org.erlide.backend.api.IBackend;
+import org.erlide.core.builder.BuildCache;
+import org.erlide.core.builder.BuildContext;
 import org.erlide.core.builder.BuildNotifier;
 import org.erlide.core.builder.BuildResource;
 import org.erlide.core.builder.BuilderHelper;
@@ -51,6 +52,7 @@ import org.erlide.engine.model.root.ErlangProjectProperties;
 import org.erlide.engine.model.root.IErlModel;
 import org.erlide.engine.model.root.IErlModule;
 import org.erlide.engine.model.root.IErlProject;
+import org.erlide.runtime.rpc.RpcException;
 import org.erlide.runtime.rpc.RpcFuture;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.SystemConfiguration;
@@ -59,9 +61,19 @@ import com.ericsson.otp.erlang.OtpErlangList;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class InternalBuilder extends ErlangBuilder {
 
+    // how many compiles may be waiting for the backend at the same time
+    private static final int MAX_IN_FLIGHT = Integer.getInteger(
+            "erlide.builder.inflight", 64);
+    // how many build backends share a build; extra ones are started on demand
+    private static final int POOL_SIZE = Integer.getInteger("erlide.builder.pool", 1);
+    // smaller builds don't pay for starting more backends
+    private static final int MIN_PARALLEL = Integer.getInteger(
+            "erlide.builder.pool.threshold", 50);
+
     private final BuilderHelper helper = new BuilderHelper();
     IResourceDelta delta;
 
@@ -115,6 +127,8 @@ public class InternalBuilder extends ErlangBuilder {
             MarkerUtils.createProblemMarker(project, null, msg, 0,
                     IMarker.SEVERITY_ERROR);
         } finally {
+            BuilderHelper.saveIncludeGraph(project);
+            BuildCache.getInstance().trim();
             cleanup(notifier);
             if (BuilderHelper.isDebugging()) {
                 ErlLogger.trace("build", " Done " + project.getName() + " took "
@@ -202,79 +216,143 @@ public class InternalBuilder extends ErlangBuilder {
         // if (BuilderHelper.isDebugging()) {
         ErlLogger.debug("Will compile %d resource(s)", Integer.valueOf(n));
         // }
-        final IBackend backend = BackendCore.getBackendManager()
-                .getBuildBackend(erlProject);
-        if (backend == null) {
-            final String message = "No backend with the required "
-                    + "version could be found. Can't build.";
-            MarkerUtils.createProblemMarker(project, null, message, 0,
-                    IMarker.SEVERITY_ERROR);
-            throw new BackendException(message);
-        }
-        final IErlModel model = ErlangEngine.getInstance().getModel();
-        backend.addProjectPath(model.findProject(project));
-
-        notifier.setProgressPerCompilationUnit(1.0f / n);
-        final Map<RpcFuture, IResource> results = new HashMap<>();
-        for (final BuildResource bres : resourcesToBuild) {
-            notifier.checkCancel();
-            final IResource resource = bres.getResource();
-            MarkerUtils.deleteMarkers(resource);
-            notifier.aboutToCompile(resource);
-            if ("erl".equals(resource.getFileExtension())) {
-                final String outputDir = erlProject.getProperties().getOutputDir()
-                        .toString();
-                final RpcFuture f = helper.startCompileErl(project, bres, outputDir,
-                        backend.getOtpRpc(), compilerOptions, kind == BuildKind.FULL);
-                if (f != null) {
-                    results.put(f, resource);
-                }
-            } else if ("yrl".equals(resource.getFileExtension())) {
-                final RpcFuture f = helper.startCompileYrl(project, resource,
-                        backend.getOtpRpc(), compilerOptions);
-                if (f != null) {
-                    results.put(f, resource);
-                }
-            } else {
-                ErlLogger.warn("Don't know how to compile: %s", resource.getName());
+        final BuildContext context = helper.createBuildContext(project, compilerOptions);
+        final List<IBackend> backends = BackendCore.getBackendManager()
+                .getBuildBackends(erlProject, n < MIN_PARALLEL ? 1 : POOL_SIZE);
+        try {
+            if (backends.isEmpty()) {
+                final String message = "No backend with the required "
+                        + "version could be found. Can't build.";
+                MarkerUtils.createProblemMarker(project, null, message, 0,
+                        IMarker.SEVERITY_ERROR);
+                throw new BackendException(message);
+            }
+            final IBackend backend = backends.get(0);
+            final IErlModel model = ErlangEngine.getInstance().getModel();
+            for (final IBackend b : backends) {
+                b.addProjectPath(model.findProject(project));
             }
-        }
-
-        final List<Entry<RpcFuture, IResource>> done = Lists.newArrayList();
-        final List<Entry<RpcFuture, IResource>> waiting = Lists
-                .newArrayList(results.entrySet());
 
-        // TODO should use some kind of notification!
-        while (!waiting.isEmpty()) {
-            for (final Entry<RpcFuture, IResource> result : waiting) {
-                notifier.checkCancel();
-                OtpErlangObject r;
-                try {
-                    r = result.getKey().get(100, TimeUnit.MILLISECONDS);
-                } catch (final Exception e) {
-                    r = null;
+            notifier.setProgressPerCompilationUnit(1.0f / n);
+            // each backend compiles its share, then helps the others with theirs
+            final WorkQueues<BuildResource> pending = new WorkQueues<>(resourcesToBuild,
+                    backends.size());
+            final int maxInFlight = Math.max(1, MAX_IN_FLIGHT / backends.size());
+            final int[] inFlight = new int[backends.size()];
+            int totalInFlight = 0;
+            helper.startLoadBatch();
+            try {
+                // compiles signal their completion here, in the order they finish
+                final BlockingQueue<Compilation> completed = new LinkedBlockingQueue<>();
+                while (!pending.isEmpty() || totalInFlight > 0) {
+                    notifier.checkCancel();
+                    for (int i = 0; i < backends.size(); i++) {
+                        while (inFlight[i] < maxInFlight && !pending.isEmpty()) {
+                            final BuildResource next = pending.next(i);
+                            final Compilation compilation = startCompile(context, next,
+                                    kind, backends.get(i), i, notifier);
+                            if (compilation != null) {
+                                compilation.notifyWhenDone(completed);
+                                inFlight[i]++;
+                                totalInFlight++;
+                            }
+                        }
+                    }
+                    if (totalInFlight == 0) {
+                        continue;
+                    }
+                    final Compilation compilation;
+                    try {
+                        // wake up now and then to check for cancellation
+                        compilation = completed.poll(500, TimeUnit.MILLISECONDS);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new OperationCanceledException();
+                    }
+                    if (compilation == null) {
+                        continue;
+                    }
+                    inFlight[compilation.worker]--;
+                    totalInFlight--;
+                    OtpErlangObject r;
+                    try {
+                        r = compilation.result.checkedGet();
+                    } catch (final RpcException e) {
+                        ErlLogger.warn("Could not compile %s: %s",
+                                compilation.resource.getName(), e.getMessage());
+                        r = null;
+                    }
+                    if (r != null) {
+                        final IBackend b = backends.get(compilation.worker);
+                        helper.completeCompile(context, compilation.resource, r,
+                                b.getOtpRpc());
+                    }
+                    notifier.compiled(compilation.resource);
                 }
-                if (r != null) {
-                    final IResource resource = result.getValue();
-
-                    helper.completeCompile(project, resource, r, backend.getOtpRpc(),
-                            compilerOptions);
-                    notifier.compiled(resource);
+            } finally {
+                // load everything that was compiled in one go
+                helper.loadBatch(project);
+            }
+            if (backends.size() > 1 && BuilderHelper.isDebugging()) {
+                ErlLogger.debug("Compiled %d resource(s) on %d backends, %d stolen",
+                        Integer.valueOf(n), Integer.valueOf(backends.size()),
+                        Integer.valueOf(pending.getStolen()));
+            }
+            helper.refreshOutputDir(project);
 
-                    done.add(result);
-                }
+            try {
+                helper.checkForClashes(backend.getOtpRpc(), project);
+            } catch (final Exception e) {
             }
-            waiting.removeAll(done);
-            done.clear();
+            for (final IBackend b : backends) {
+                b.removeProjectPath(model.findProject(project));
+            }
+        } finally {
+            BackendCore.getBackendManager().releaseBuildBackends(erlProject);
         }
-        helper.refreshOutputDir(project);
 
-        try {
-            helper.checkForClashes(backend.getOtpRpc(), project);
-        } catch (final Exception e) {
+    }
+
+    private Compilation startCompile(final BuildContext context,
+            final BuildResource bres, final BuildKind kind, final IBackend backend,
+            final int worker, final BuildNotifier notifier) {
+        final IResource resource = bres.getResource();
+        MarkerUtils.deleteMarkers(resource);
+        notifier.aboutToCompile(resource);
+        RpcFuture f = null;
+        if ("erl".equals(resource.getFileExtension())) {
+            f = helper.startCompileErl(context, bres, backend.getOtpRpc(),
+                    kind == BuildKind.FULL);
+        } else if ("yrl".equals(resource.getFileExtension())) {
+            f = helper.startCompileYrl(context.getProject(), resource,
+                    backend.getOtpRpc(), context.getCompilerOptions());
+        } else {
+            ErlLogger.warn("Don't know how to compile: %s", resource.getName());
+        }
+        return f == null ? null : new Compilation(resource, f, worker);
+    }
+
+    private static class Compilation {
+        public final IResource resource;
+        public final RpcFuture result;
+        // index of the backend that compiles it
+        public final int worker;
+
+        public Compilation(final IResource resource, final RpcFuture result,
+                final int worker) {
+            this.resource = resource;
+            this.result = result;
+            this.worker = worker;
         }
-        backend.removeProjectPath(model.findProject(project));
 
+        public void notifyWhenDone(final BlockingQueue<Compilation> queue) {
+            result.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    queue.add(Compilation.this);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
     }
 
     private void handleAppFile(final IProject project, final String outPath,
@@ -0,0 +1,66 @@
+package org.erlide.core.internal.builder;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The work of a build, split between several workers. Each worker takes from
+ * the head of its own queue and, once that is empty, steals from the tail of
+ * the longest other queue, so that all workers stay busy until the end even
+ * if their shares take different times to finish.
+ *
+ * <p>
+ * Not thread safe: the builder hands out all the work from its own thread.
+ * </p>
+ */
+final class WorkQueues<T> {
+
+    private final List<Deque<T>> queues;
+    private int size;
+    private int stolen;
+
+    WorkQueues(final Iterable<T> work, final int workers) {
+        queues = Lists.newArrayListWithCapacity(workers);
+        for (int i = 0; i < workers; i++) {
+            queues.add(new ArrayDeque<T>());
+        }
+        for (final T item : work) {
+            queues.get(size++ % workers).add(item);
+        }
+    }
+
+    /**
+     * @return the next item for the worker, or null if there is no work left.
+     */
+    T next(final int worker) {
+        final Deque<T> own = queues.get(worker);
+        if (!own.isEmpty()) {
+            size--;
+            return own.removeFirst();
+        }
+        Deque<T> victim = null;
+        for (final Deque<T> queue : queues) {
+            if (victim == null || queue.size() > victim.size()) {
+                victim = queue;
+            }
+        }
+        if (victim == null || victim.isEmpty()) {
+            return null;
+        }
+        size--;
+        stolen++;
+        return victim.removeLast();
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int getStolen() {
+        return stolen;
+    }
+
+}
@@ -20,8 +20,13 @@
 
 package com.ericsson.otp.erlang;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.Random;
 
 /**
@@ -102,6 +107,35 @@ public abstract class AbstractConnection extends Thread {
 
     protected static Random random = null;
 
+    // outgoing packets; a sender that finds nobody writing takes all the
+    // queued ones and writes them with one flush, the others wait until
+    // theirs is out. sendQueue and writing are guarded by sendQueue.
+    private static final int sendBufferSize = 64 * 1024;
+    private final Queue<Packet> sendQueue = new ArrayDeque<Packet>();
+    private boolean writing = false;
+    private OutputStream sendBuffer = null;
+
+    private static final class Packet {
+        final OtpOutputStream header;
+        final OtpOutputStream payload;
+        // guarded by the connection's sendQueue
+        boolean done = false;
+        IOException failure = null;
+
+        Packet(final OtpOutputStream header, final OtpOutputStream payload) {
+            this.header = header;
+            this.payload = payload;
+        }
+    }
+
+    // incoming packets up to this size are read into one buffer owned by the
+    // connection and only their payload is copied out, to be decoded by the
+    // receiver, so that the buffer can be reused for the next packet; bigger
+    // ones get their own array
+    private static final int recvBufferMax = 1024 * 1024;
+    protected static boolean reuseRecvBuffer = true;
+    private byte[] recvBuffer = new byte[4096];
+
     private int flags = 0;
 
     static {
@@ -115,6 +149,12 @@ public abstract class AbstractConnection extends Thread {
             defaultLevel = 0;
         }
         random = new Random();
+
+        final String reuse = System.getProperties().getProperty(
+                "OtpConnection.reuseRecvBuffer");
+        if (reuse != null) {
+            reuseRecvBuffer = Boolean.valueOf(reuse).booleanValue();
+        }
     }
 
     // private AbstractConnection() {
@@ -501,26 +541,32 @@ public abstract class AbstractConnection extends Thread {
                     // read 4 bytes - get length of incoming packet
                     // socket.getInputStream().read(lbuf);
                     readSock(socket, lbuf);
-                    ibuf = new OtpInputStream(lbuf, flags);
-                    len = ibuf.read4BE();
+                    len = (lbuf[0] & 0xff) << 24 | (lbuf[1] & 0xff) << 16
+                            | (lbuf[2] & 0xff) << 8 | lbuf[3] & 0xff;
 
                     // received tick? send tock!
                     if (len == 0) {
-                        synchronized (this) {
-                            final OutputStream out = socket.getOutputStream();
-                            out.write(tock);
-                            out.flush();
-                        }
+                        final OtpOutputStream tockBuf = new OtpOutputStream(tock.length);
+                        tockBuf.write(tock);
+                        enqueue(tockBuf, null);
                     }
 
                 } while (len == 0); // tick_loop
 
                 // got a real message (maybe) - read len bytes
-                final byte[] tmpbuf = new byte[len];
+                final boolean reused = reuseRecvBuffer && len <= recvBufferMax;
+                final byte[] tmpbuf;
+                if (reused) {
+                    if (recvBuffer.length < len) {
+                        recvBuffer = new byte[Math.max(len, recvBuffer.length * 2)];
+                    }
+                    tmpbuf = recvBuffer;
+                } else {
+                    tmpbuf = new byte[len];
+                }
                 // i = socket.getInputStream().read(tmpbuf);
-                readSock(socket, tmpbuf);
-                ibuf.close();
-                ibuf = new OtpInputStream(tmpbuf, flags);
+                readSock(socket, tmpbuf, len);
+                ibuf = new OtpInputStream(tmpbuf, 0, len, flags);
 
                 if (ibuf.read1() != passThrough) {
                     break receive_loop;
@@ -589,6 +635,9 @@ public abstract class AbstractConnection extends Thread {
 
                     to = (OtpErlangPid) head.elementAt(2);
 
+                    if (reused) {
+                        ibuf = detach(ibuf);
+                    }
                     deliver(new OtpMsg(to, ibuf));
                     break;
 
@@ -632,6 +681,9 @@ public abstract class AbstractConnection extends Thread {
                     from = (OtpErlangPid) head.elementAt(1);
                     toName = (OtpErlangAtom) head.elementAt(3);
 
+                    if (reused) {
+                        ibuf = detach(ibuf);
+                    }
                     deliver(new OtpMsg(from, toName.atomValue(), ibuf));
                     break;
 
@@ -795,52 +847,121 @@ public abstract class AbstractConnection extends Thread {
     }
 
     // used by send and send_reg (message types with payload)
-    protected synchronized void do_send(final OtpOutputStream header,
-            final OtpOutputStream payload) throws IOException {
-        try {
-            if (traceLevel >= sendThreshold) {
-                // Need to decode header and output buffer to show trace
-                // message!
-                // First make OtpInputStream, then decode.
-                try {
-                    final OtpErlangObject h = header.getOtpInputStream(5).read_any();
-                    System.out.println("-> " + headerType(h) + " " + h);
-
-                    OtpErlangObject o = payload.getOtpInputStream(0).read_any();
-                    System.out.println("   " + o);
-                    o = null;
-                } catch (final OtpErlangDecodeException e) {
-                    System.out.println("   " + "can't decode output buffer:" + e);
-                }
+    protected void do_send(final OtpOutputStream header, final OtpOutputStream payload)
+            throws IOException {
+        if (traceLevel >= sendThreshold) {
+            // Need to decode header and output buffer to show trace
+            // message!
+            // First make OtpInputStream, then decode.
+            try {
+                final OtpErlangObject h = header.getOtpInputStream(5).read_any();
+                System.out.println("-> " + headerType(h) + " " + h);
+
+                OtpErlangObject o = payload.getOtpInputStream(0).read_any();
+                System.out.println("   " + o);
+                o = null;
+            } catch (final OtpErlangDecodeException e) {
+                System.out.println("   " + "can't decode output buffer:" + e);
             }
-
-            // group flush op in favour of possible ssh-tunneled stream
-            final OutputStream out = socket.getOutputStream();
-            header.writeTo(out);
-            payload.writeTo(out);
-            out.flush();
-        } catch (final IOException e) {
-            close();
-            throw e;
         }
+        enqueue(header, payload);
     }
 
     // used by the other message types
-    protected synchronized void do_send(final OtpOutputStream header) throws IOException {
-        try {
-            if (traceLevel >= ctrlThreshold) {
+    protected void do_send(final OtpOutputStream header) throws IOException {
+        if (traceLevel >= ctrlThreshold) {
+            try {
+                final OtpErlangObject h = header.getOtpInputStream(5).read_any();
+                System.out.println("-> " + headerType(h) + " " + h);
+            } catch (final OtpErlangDecodeException e) {
+                System.out.println("   " + "can't decode output buffer: " + e);
+            }
+        }
+        enqueue(header, null);
+    }
+
+    /*
+     * Queue a packet and wait until it is written. If no other sender is
+     * writing, this one writes all the packets queued so far, its own included,
+     * with one flush; packets queued meanwhile are left to their senders, so
+     * nobody writes for others for longer than one batch. If the write fails,
+     * the connection is closed and all the queued senders get the error.
+     */
+    private void enqueue(final OtpOutputStream header, final OtpOutputStream payload)
+            throws IOException {
+        final Packet packet = new Packet(header, payload);
+        final List<Packet> batch;
+        synchronized (sendQueue) {
+            if (!connected) {
+                throw new IOException("Not connected");
+            }
+            sendQueue.add(packet);
+            boolean interrupted = false;
+            while (writing && !packet.done) {
                 try {
-                    final OtpErlangObject h = header.getOtpInputStream(5).read_any();
-                    System.out.println("-> " + headerType(h) + " " + h);
-                } catch (final OtpErlangDecodeException e) {
-                    System.out.println("   " + "can't decode output buffer: " + e);
+                    sendQueue.wait();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
                 }
             }
-            header.writeToAndFlush(socket.getOutputStream());
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (packet.done) {
+                if (packet.failure != null) {
+                    throw packet.failure;
+                }
+                return;
+            }
+            writing = true;
+            batch = new ArrayList<Packet>(sendQueue);
+            sendQueue.clear();
+        }
+        IOException failure = null;
+        try {
+            writeBatch(batch);
         } catch (final IOException e) {
+            failure = e;
+        }
+        synchronized (sendQueue) {
+            writing = false;
+            for (final Packet p : batch) {
+                p.done = true;
+                p.failure = failure;
+            }
+            if (failure != null) {
+                connected = false;
+                for (final Packet p : sendQueue) {
+                    p.done = true;
+                    p.failure = failure;
+                }
+                sendQueue.clear();
+            }
+            sendQueue.notifyAll();
+        }
+        if (failure != null) {
             close();
-            throw e;
+            throw failure;
+        }
+    }
+
+    // only called by the sender that set 'writing'
+    private void writeBatch(final List<Packet> batch) throws IOException {
+        final OtpTransport s = socket;
+        if (s == null) {
+            throw new IOException("Not connected");
         }
+        if (sendBuffer == null) {
+            sendBuffer = new BufferedOutputStream(s.getOutputStream(), sendBufferSize);
+        }
+        final OutputStream out = sendBuffer;
+        for (final Packet packet : batch) {
+            packet.header.writeTo(out);
+            if (packet.payload != null) {
+                packet.payload.writeTo(out);
+            }
+        }
+        out.flush();
     }
 
     protected String headerType(final OtpErlangObject h) {
@@ -888,10 +1009,27 @@ public abstract class AbstractConnection extends Thread {
         return "(unknown type)";
     }
 
+    /*
+     * Copy the unread part of a stream over the shared receive buffer.
+     */
+    private OtpInputStream detach(final OtpInputStream ibuf)
+            throws OtpErlangDecodeException {
+        final byte[] rest = new byte[ibuf.available()];
+        ibuf.readN(rest);
+        return new OtpInputStream(rest, flags);
+    }
+
     /* this method now throws exception if we don't get full read */
     protected int readSock(final OtpTransport s, final byte[] b) throws IOException {
+        return readSock(s, b, b.length);
+    }
+
+    /**
+     * Read exactly <code>len</code> bytes into the start of <code>b</code>.
+     */
+    protected int readSock(final OtpTransport s, final byte[] b, final int len)
+            throws IOException {
         int got = 0;
-        final int len = b.length;
         int i;
 
         synchronized (this) {
@@ -19,9 +19,22 @@
  */
 package com.ericsson.otp.erlang;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * This class implements a generic FIFO queue. There is no upper bound on the length of
  * the queue, items are linked.
+ *
+ * <p>
+ * Putting and taking items doesn't lock. A consumer only parks when the queue is
+ * empty, and producers unpark the parked consumers after adding an item. Usually
+ * there is just one (the mailbox owner) and it gets a slot of its own, the others
+ * are kept in a list.
+ * </p>
  */
 
 public class GenericQueue {
@@ -29,26 +42,21 @@ public class GenericQueue {
     private static final int closing = 1;
     private static final int closed = 2;
 
-    private int status;
-    private Bucket head;
-    private Bucket tail;
-    private int count;
-
-    private void init() {
-        head = null;
-        tail = null;
-        count = 0;
-    }
+    private volatile int status;
+    private final ConcurrentLinkedQueue<Object> items = new ConcurrentLinkedQueue<Object>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicReference<Thread> waiter = new AtomicReference<Thread>();
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
 
     /** Create an empty queue */
     public GenericQueue() {
-        init();
         status = open;
     }
 
     /** Clear a queue */
     public void flush() {
-        init();
+        items.clear();
+        count.set(0);
     }
 
     public void close() {
@@ -61,20 +69,20 @@ public class GenericQueue {
      * @param o
      *            Object to insert in the queue
      */
-    public synchronized void put(final Object o) {
-        final Bucket b = new Bucket(o);
-
-        if (tail != null) {
-            tail.setNext(b);
-            tail = b;
-        } else {
-            // queue was empty but has one element now
-            head = tail = b;
+    public void put(final Object o) {
+        items.offer(o);
+        count.incrementAndGet();
+
+        // wake up any waiting tasks
+        final Thread w = waiter.get();
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+        if (!waiters.isEmpty()) {
+            for (final Thread waiter : waiters) {
+                LockSupport.unpark(waiter);
+            }
         }
-        count++;
-
-        // notify any waiting tasks
-        notify();
     }
 
     /**
@@ -82,14 +90,23 @@ public class GenericQueue {
      *
      * @return The object at the head of the queue.
      */
-    public synchronized Object get() {
-        Object o = null;
+    public Object get() {
+        Object o = tryGet();
+        if (o != null) {
+            return o;
+        }
 
-        while ((o = tryGet()) == null) {
-            try {
-                this.wait();
-            } catch (final InterruptedException e) {
+        final Thread self = Thread.currentThread();
+        final boolean slot = addWaiter(self);
+        try {
+            // re-check after registering, a put may have missed us
+            while ((o = tryGet()) == null) {
+                LockSupport.park(this);
+                // interrupts are ignored, as they always were
+                Thread.interrupted();
             }
+        } finally {
+            removeWaiter(self, slot);
         }
         return o;
     }
@@ -106,78 +123,66 @@ public class GenericQueue {
      *
      * @return The object at the head of the queue, or null if none arrived in time.
      */
-    public synchronized Object get(final long timeout) throws InterruptedException {
+    public Object get(final long timeout) throws InterruptedException {
         if (status == closed) {
             return null;
         }
 
-        long currentTime = System.currentTimeMillis();
-        final long stopTime = currentTime + timeout;
-        Object o = null;
+        Object o = tryGet();
+        if (o != null) {
+            return o;
+        }
+        if (timeout <= 0) {
+            throw new InterruptedException("Get operation timed out");
+        }
 
-        while (true) {
-            if ((o = tryGet()) != null) {
-                return o;
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        final Thread self = Thread.currentThread();
+        final boolean slot = addWaiter(self);
+        try {
+            while ((o = tryGet()) == null) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new InterruptedException("Get operation timed out");
+                }
+                LockSupport.parkNanos(this, remaining);
+                Thread.interrupted();
             }
+        } finally {
+            removeWaiter(self, slot);
+        }
+        return o;
+    }
 
-            currentTime = System.currentTimeMillis();
-            if (stopTime <= currentTime) {
-                throw new InterruptedException("Get operation timed out");
-            }
+    // returns true if the thread got the single waiter slot
+    private boolean addWaiter(final Thread t) {
+        if (waiter.compareAndSet(null, t)) {
+            return true;
+        }
+        waiters.add(t);
+        return false;
+    }
 
-            try {
-                this.wait(stopTime - currentTime);
-            } catch (final InterruptedException e) {
-                // ignore, but really should retry operation instead
-            }
+    private void removeWaiter(final Thread t, final boolean slot) {
+        if (slot) {
+            waiter.set(null);
+        } else {
+            waiters.remove(t);
         }
     }
 
     // attempt to retrieve message from queue head
     public Object tryGet() {
-        Object o = null;
-
-        if (head != null) {
-            o = head.getContents();
-            head = head.getNext();
-            count--;
+        final Object o = items.poll();
 
-            if (head == null) {
-                tail = null;
-                count = 0;
-            }
+        if (o != null) {
+            count.decrementAndGet();
         }
 
         return o;
     }
 
-    public synchronized int getCount() {
-        return count;
-    }
-
-    /*
-     * The Bucket class. The queue is implemented as a linked list of Buckets. The
-     * container holds the queued object and a reference to the next Bucket.
-     */
-    class Bucket {
-        private Bucket next;
-        private final Object contents;
-
-        public Bucket(final Object o) {
-            next = null;
-            contents = o;
-        }
-
-        public void setNext(final Bucket newNext) {
-            next = newNext;
-        }
-
-        public Bucket getNext() {
-            return next;
-        }
-
-        public Object getContents() {
-            return contents;
-        }
+    public int getCount() {
+        return count.get();
     }
 }
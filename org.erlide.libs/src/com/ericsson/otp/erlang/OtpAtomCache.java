@@ -0,0 +1,165 @@
+/*
+ * %CopyrightBegin%
+ *
+ * Copyright Ericsson AB 2000-2013. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * %CopyrightEnd%
+ */
+package com.ericsson.otp.erlang;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A bounded table of the atoms decoded by {@link OtpInputStream}, keyed on their
+ * encoded bytes. Most traffic uses a small set of atoms over and over, and a hit
+ * returns a shared {@link OtpErlangAtom} without decoding the characters again.
+ * </p>
+ *
+ * <p>
+ * The table is direct-mapped: each slot holds at most one atom and a colliding
+ * atom simply replaces it, so lookups never lock and the memory used is fixed.
+ * The size can be set with the system property <code>OtpAtomCache.size</code>
+ * (rounded up to a power of two, 0 disables the cache).
+ * </p>
+ */
+public final class OtpAtomCache {
+
+    private static final class Entry {
+        final boolean utf8;
+        final byte[] bytes;
+        final OtpErlangAtom atom;
+
+        Entry(final boolean utf8, final byte[] bytes, final OtpErlangAtom atom) {
+            this.utf8 = utf8;
+            this.bytes = bytes;
+            this.atom = atom;
+        }
+    }
+
+    private static final int defaultSize = 2048;
+
+    // entries are immutable, so a racy read sees either a whole entry or null
+    private static final Entry[] table;
+    private static final int mask;
+
+    // hit and miss counts, striped by thread so that the reader threads of
+    // different connections don't update the same cache line; each stripe is
+    // padded to 128 bytes and holds its hits at [0] and misses at [1]. The
+    // updates aren't atomic, threads sharing a stripe may lose a few counts.
+    private static final int stripes = 16;
+    private static final int stripeSize = 16;
+    private static final AtomicLongArray counts = new AtomicLongArray(stripes
+            * stripeSize);
+
+    static {
+        int size = defaultSize;
+        final String prop = System.getProperties().getProperty("OtpAtomCache.size");
+        try {
+            if (prop != null) {
+                size = Integer.valueOf(prop).intValue();
+            }
+        } catch (final NumberFormatException e) {
+            size = defaultSize;
+        }
+        if (size <= 0) {
+            table = null;
+            mask = 0;
+        } else {
+            int n = 1;
+            while (n < size) {
+                n <<= 1;
+            }
+            table = new Entry[n];
+            mask = n - 1;
+        }
+    }
+
+    private OtpAtomCache() {
+    }
+
+    /*
+     * Find the atom encoded as buf[offset..offset+len), or null.
+     */
+    static OtpErlangAtom get(final boolean utf8, final byte[] buf, final int offset,
+            final int len) {
+        if (table == null) {
+            return null;
+        }
+        final Entry e = table[hash(utf8, buf, offset, len) & mask];
+        if (e != null && e.utf8 == utf8 && e.bytes.length == len) {
+            final byte[] bytes = e.bytes;
+            int i = 0;
+            while (i < len && bytes[i] == buf[offset + i]) {
+                i++;
+            }
+            if (i == len) {
+                count(0);
+                return e.atom;
+            }
+        }
+        count(1);
+        return null;
+    }
+
+    /*
+     * Remember the atom decoded from bytes. The array is kept, so it must not be
+     * modified afterwards.
+     */
+    static void put(final boolean utf8, final byte[] bytes, final OtpErlangAtom atom) {
+        if (table == null) {
+            return;
+        }
+        table[hash(utf8, bytes, 0, bytes.length) & mask] = new Entry(utf8, bytes, atom);
+    }
+
+    private static void count(final int which) {
+        final int stripe = (int) Thread.currentThread().getId() & stripes - 1;
+        final int i = stripe * stripeSize + which;
+        counts.lazySet(i, counts.get(i) + 1);
+    }
+
+    private static long total(final int which) {
+        long n = 0;
+        for (int i = 0; i < stripes; i++) {
+            n += counts.get(i * stripeSize + which);
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of decoded atoms that were found in the cache.
+     */
+    public static long hits() {
+        return total(0);
+    }
+
+    /**
+     * @return the number of decoded atoms that were not found in the cache.
+     */
+    public static long misses() {
+        return total(1);
+    }
+
+    private static int hash(final boolean utf8, final byte[] buf, final int offset,
+            final int len) {
+        int h = utf8 ? 1 : 0;
+        for (int i = offset; i < offset + len; i++) {
+            h = 31 * h + buf[i];
+        }
+        return h ^ h >>> 16;
+    }
+
+}
@@ -346,12 +346,21 @@ public class OtpInputStream extends ByteArrayInputStream {
      * @exception OtpErlangDecodeException
      *                if the next term in the stream is not an atom.
      */
-    @SuppressWarnings("fallthrough")
     public String read_atom() throws OtpErlangDecodeException {
+        return read_atom_object().atomValue();
+    }
+
+    /*
+     * Read an atom, sharing the instance with earlier occurrences of the same
+     * atom through OtpAtomCache.
+     */
+    @SuppressWarnings("fallthrough")
+    OtpErlangAtom read_atom_object() throws OtpErlangDecodeException {
         int tag;
         int len = -1;
         byte[] strbuf;
         String atom;
+        final boolean utf8;
 
         tag = read1skip_version();
 
@@ -359,8 +368,36 @@ public class OtpInputStream extends ByteArrayInputStream {
 
         case OtpExternal.atomTag:
             len = read2BE();
-            strbuf = new byte[len];
-            this.readN(strbuf);
+            utf8 = false;
+            break;
+
+        case OtpExternal.smallAtomUtf8Tag:
+            len = read1();
+            // fall-through
+        case OtpExternal.atomUtf8Tag:
+            if (len < 0) {
+                len = read2BE();
+            }
+            utf8 = true;
+            break;
+
+        default:
+            throw new OtpErlangDecodeException(
+                    "wrong tag encountered, expected " + OtpExternal.atomTag + ", or "
+                            + OtpExternal.atomUtf8Tag + ", got " + tag);
+        }
+
+        if (len <= count - pos) {
+            final OtpErlangAtom cached = OtpAtomCache.get(utf8, buf, pos, len);
+            if (cached != null) {
+                pos += len;
+                return cached;
+            }
+        }
+
+        strbuf = new byte[len];
+        this.readN(strbuf);
+        if (!utf8) {
             try {
                 atom = new String(strbuf, "ISO-8859-1");
             } catch (final java.io.UnsupportedEncodingException e) {
@@ -373,17 +410,7 @@ public class OtpInputStream extends ByteArrayInputStream {
                  */
                 atom = atom.substring(0, OtpExternal.maxAtomLength);
             }
-            break;
-
-        case OtpExternal.smallAtomUtf8Tag:
-            len = read1();
-            // fall-through
-        case OtpExternal.atomUtf8Tag:
-            if (len < 0) {
-                len = read2BE();
-            }
-            strbuf = new byte[len];
-            this.readN(strbuf);
+        } else {
             try {
                 atom = new String(strbuf, "UTF-8");
             } catch (final java.io.UnsupportedEncodingException e) {
@@ -397,15 +424,11 @@ public class OtpInputStream extends ByteArrayInputStream {
                 final int[] cps = OtpErlangString.stringToCodePoints(atom);
                 atom = new String(cps, 0, OtpExternal.maxAtomLength);
             }
-            break;
-
-        default:
-            throw new OtpErlangDecodeException(
-                    "wrong tag encountered, expected " + OtpExternal.atomTag + ", or "
-                            + OtpExternal.atomUtf8Tag + ", got " + tag);
         }
 
-        return atom;
+        final OtpErlangAtom result = new OtpErlangAtom(atom);
+        OtpAtomCache.put(utf8, strbuf, result);
+        return result;
     }
 
     /**
@@ -1166,7 +1189,7 @@ public class OtpInputStream extends ByteArrayInputStream {
         case OtpExternal.atomTag:
         case OtpExternal.smallAtomUtf8Tag:
         case OtpExternal.atomUtf8Tag:
-            return new OtpErlangAtom(this);
+            return read_atom_object();
 
         case OtpExternal.floatTag:
         case OtpExternal.newFloatTag:
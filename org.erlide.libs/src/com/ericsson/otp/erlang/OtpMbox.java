@@ -79,6 +79,7 @@ public class OtpMbox {
     OtpNode home;
     OtpErlangPid self;
     GenericQueue queue;
+    boolean sharedQueue;
     String name;
     Links links;
 
@@ -144,6 +145,28 @@ public class OtpMbox {
         return name;
     }
 
+    /**
+     * <p>
+     * Deliver the messages sent to this mailbox to the given queue instead of to the
+     * mailbox's own. Several mailboxes can share one queue, so that a single thread is
+     * able to serve all of them; {@link OtpMsg#getRecipientPid()} tells which mailbox a
+     * message was sent to.
+     * </p>
+     *
+     * <p>
+     * This must be called before the mailbox's pid is made known to anyone. Messages
+     * must then be retrieved from the shared queue, not with the receive methods of this
+     * mailbox.
+     * </p>
+     *
+     * @param shared
+     *            the queue that will get this mailbox's messages.
+     */
+    public void shareQueue(final GenericQueue shared) {
+        queue = shared;
+        sharedQueue = true;
+    }
+
     /**
      * Block until a message arrives for this mailbox.
      *
@@ -386,6 +409,44 @@ public class OtpMbox {
         }
     }
 
+    /**
+     * <p>
+     * Send an already encoded message to a named mailbox created from another node. The
+     * encoded bytes are written to the connection as they are, so a caller that needs
+     * the size of the message (see {@link OtpOutputStream#size()}) doesn't pay for
+     * encoding it twice.
+     * </p>
+     *
+     * @param aname
+     *            the registered name of recipient mailbox.
+     *
+     * @param node
+     *            the name of the remote node where the recipient mailbox is registered.
+     *
+     * @param payload
+     *            the encoded body of the message, as created by
+     *            {@link OtpOutputStream#OtpOutputStream(OtpErlangObject)}.
+     *
+     */
+    public void send(final String aname, final String node,
+            final OtpOutputStream payload) {
+        try {
+            final String currentNode = home.node();
+            if (node.equals(currentNode) || node.indexOf('@', 0) < 0 && node
+                    .equals(currentNode.substring(0, currentNode.indexOf('@', 0)))) {
+                home.deliver(new OtpMsg(self, aname, payload.getOtpInputStream(0)));
+            } else {
+                // other node
+                final OtpCookedConnection conn = home.getConnection(node);
+                if (conn == null) {
+                    return;
+                }
+                conn.sendBuf(self, aname, payload);
+            }
+        } catch (final Exception e) {
+        }
+    }
+
     /**
      * Close this mailbox with the given reason.
      *
@@ -640,7 +701,9 @@ public class OtpMbox {
     @Override
     protected void finalize() {
         close();
-        queue.flush();
+        if (!sharedQueue) {
+            queue.flush();
+        }
     }
 
     /**
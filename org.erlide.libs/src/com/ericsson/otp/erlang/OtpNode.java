@@ -20,11 +20,12 @@
 package com.ericsson.otp.erlang;
 
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.Collection;
-import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
@@ -63,7 +64,7 @@ public class OtpNode extends OtpLocalNode {
     private Acceptor acceptor = null;
 
     // keep track of all connections
-    Hashtable<String, OtpCookedConnection> connections = null;
+    ConcurrentHashMap<String, OtpCookedConnection> connections = null;
 
     // keep track of all mailboxes
     Mailboxes mboxes = null;
@@ -223,7 +224,7 @@ public class OtpNode extends OtpLocalNode {
 
     private synchronized void init(final int aport) throws IOException {
         if (!initDone) {
-            connections = new Hashtable<String, OtpCookedConnection>(17, (float) 0.95);
+            connections = new ConcurrentHashMap<String, OtpCookedConnection>(17, (float) 0.95);
             mboxes = new Mailboxes();
             acceptor = new Acceptor(aport);
             initDone = true;
@@ -550,6 +551,12 @@ public class OtpNode extends OtpLocalNode {
         OtpPeer peer = null;
         OtpCookedConnection conn = null;
 
+        // the common case, an existing connection, doesn't need the lock
+        conn = connections.get(anode);
+        if (conn != null) {
+            return conn;
+        }
+
         synchronized (connections) {
             // first just try looking up the name as-is
             conn = connections.get(anode);
@@ -622,38 +629,52 @@ public class OtpNode extends OtpLocalNode {
     }
 
     /*
-     * this class used to wrap the mailbox hashtables so we can use weak references
+     * this class used to wrap the mailbox hashtables so we can use weak references.
+     * Lookups don't lock; entries of mailboxes that were garbage collected without
+     * being closed are removed through a reference queue.
      */
     public class Mailboxes {
         // mbox pids here
-        private Hashtable<OtpErlangPid, WeakReference<OtpMbox>> byPid = null;
+        private final ConcurrentHashMap<OtpErlangPid, MboxRef> byPid;
         // mbox names here
-        private Hashtable<String, WeakReference<OtpMbox>> byName = null;
+        private final ConcurrentHashMap<String, MboxRef> byName;
+        // refs of collected mailboxes
+        private final ReferenceQueue<OtpMbox> collected = new ReferenceQueue<OtpMbox>();
+
+        private final class MboxRef extends WeakReference<OtpMbox> {
+            final OtpErlangPid pid;
+            final String name;
+
+            MboxRef(final OtpMbox mbox, final String name) {
+                super(mbox, collected);
+                pid = mbox.self;
+                this.name = name;
+            }
+        }
 
         public Mailboxes() {
-            byPid = new Hashtable<OtpErlangPid, WeakReference<OtpMbox>>(17, (float) 0.95);
-            byName = new Hashtable<String, WeakReference<OtpMbox>>(17, (float) 0.95);
+            byPid = new ConcurrentHashMap<OtpErlangPid, MboxRef>(17, (float) 0.95);
+            byName = new ConcurrentHashMap<String, MboxRef>(17, (float) 0.95);
         }
 
         public OtpMbox create(final String name) {
-            OtpMbox m = null;
-
-            synchronized (byName) {
-                if (get(name) != null) {
-                    return null;
-                }
-                final OtpErlangPid pid = createPid();
-                m = new OtpMbox(OtpNode.this, pid, name);
-                byPid.put(pid, new WeakReference<OtpMbox>(m));
-                byName.put(name, new WeakReference<OtpMbox>(m));
+            expunge();
+            final OtpErlangPid pid = createPid();
+            final OtpMbox m = new OtpMbox(OtpNode.this, pid, name);
+            final MboxRef ref = new MboxRef(m, name);
+            if (!putName(name, ref)) {
+                return null;
             }
+            // one ref for both tables, so that collecting it clears both
+            byPid.put(pid, ref);
             return m;
         }
 
         public OtpMbox create() {
+            expunge();
             final OtpErlangPid pid = createPid();
             final OtpMbox m = new OtpMbox(OtpNode.this, pid);
-            byPid.put(pid, new WeakReference<OtpMbox>(m));
+            byPid.put(pid, new MboxRef(m, null));
             return m;
         }
 
@@ -663,19 +684,7 @@ public class OtpNode extends OtpLocalNode {
         }
 
         public String[] names() {
-            String allnames[] = null;
-
-            synchronized (byName) {
-                final int n = byName.size();
-                final Enumeration<String> keys = byName.keys();
-                allnames = new String[n];
-
-                int i = 0;
-                while (keys.hasMoreElements()) {
-                    allnames[i++] = keys.nextElement();
-                }
-            }
-            return allnames;
+            return byName.keySet().toArray(new String[0]);
         }
 
         public boolean register(final String name, final OtpMbox mbox) {
@@ -685,23 +694,39 @@ public class OtpNode extends OtpLocalNode {
                     mbox.name = null;
                 }
             } else {
-                synchronized (byName) {
-                    if (get(name) != null) {
-                        return false;
-                    }
-                    byName.put(name, new WeakReference<OtpMbox>(mbox));
-                    mbox.name = name;
+                expunge();
+                if (!putName(name, new MboxRef(mbox, name))) {
+                    return false;
                 }
+                mbox.name = name;
             }
             return true;
         }
 
+        /*
+         * bind name to mbox unless it already names a live mailbox
+         */
+        private boolean putName(final String name, final MboxRef ref) {
+            while (true) {
+                final MboxRef old = byName.putIfAbsent(name, ref);
+                if (old == null) {
+                    return true;
+                }
+                if (old.get() != null) {
+                    return false;
+                }
+                if (byName.replace(name, old, ref)) {
+                    return true;
+                }
+            }
+        }
+
         /*
          * look up a mailbox based on its name. If the mailbox has gone out of scope we
          * also remove the reference from the hashtable so we don't find it again.
          */
         public OtpMbox get(final String name) {
-            final WeakReference<OtpMbox> wr = byName.get(name);
+            final MboxRef wr = byName.get(name);
 
             if (wr != null) {
                 final OtpMbox m = wr.get();
@@ -709,7 +734,7 @@ public class OtpNode extends OtpLocalNode {
                 if (m != null) {
                     return m;
                 }
-                byName.remove(name);
+                byName.remove(name, wr);
             }
             return null;
         }
@@ -719,7 +744,7 @@ public class OtpNode extends OtpLocalNode {
          * also remove the reference from the hashtable so we don't find it again.
          */
         public OtpMbox get(final OtpErlangPid pid) {
-            final WeakReference<OtpMbox> wr = byPid.get(pid);
+            final MboxRef wr = byPid.get(pid);
 
             if (wr != null) {
                 final OtpMbox m = wr.get();
@@ -727,7 +752,7 @@ public class OtpNode extends OtpLocalNode {
                 if (m != null) {
                     return m;
                 }
-                byPid.remove(pid);
+                byPid.remove(pid, wr);
             }
             return null;
         }
@@ -738,6 +763,30 @@ public class OtpNode extends OtpLocalNode {
                 byName.remove(mbox.name);
             }
         }
+
+        /*
+         * drop the entries of mailboxes that were collected without being closed
+         */
+        private void expunge() {
+            Object r;
+            while ((r = collected.poll()) != null) {
+                final MboxRef ref = (MboxRef) r;
+                // the tables may hold other refs to the same mailbox, as
+                // register() makes a new one for the name
+                removeCollected(byPid, ref.pid);
+                if (ref.name != null) {
+                    removeCollected(byName, ref.name);
+                }
+            }
+        }
+    }
+
+    private static <K> void removeCollected(
+            final ConcurrentHashMap<K, ? extends Reference<?>> map, final K key) {
+        final Reference<?> current = map.get(key);
+        if (current != null && current.get() == null) {
+            map.remove(key, current);
+        }
     }
 
     /*
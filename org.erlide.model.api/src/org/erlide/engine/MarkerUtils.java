@@ -1,9 +1,7 @@
 package org.erlide.engine;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -14,7 +12,7 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.xtext.xbase.lib.Pair;
+import org.erlide.engine.TaskTagScanner.Task;
 import org.erlide.engine.model.builder.ErlProblems;
 import org.erlide.engine.model.builder.ProblemData;
 import org.erlide.engine.model.erlang.IErlFunction;
@@ -33,17 +31,14 @@ import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangRangeException;
 import com.ericsson.otp.erlang.OtpErlangTuple;
 import com.google.common.base.Joiner;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.io.Files;
 
 public final class MarkerUtils {
 
-    // do this to keep them from being detected as real tasks by Jenkins plugin
-    private static final String FIXME_TAG = "F" + "IXME";
-    private static final String XXX_TAG = "X" + "XX";
-    private static final String TODO_TAG = "T" + "ODO";
-    private static final String TODO_XXX_FIXME_PATTERN = "^[^%]*%+[ \t]*(" + TODO_TAG
-            + "|" + XXX_TAG + "|" + FIXME_TAG + ").*";
     // Copied from org.eclipse.ui.ide (since we don't want ui code in core)
     public static final String PATH_ATTRIBUTE = "org.eclipse.ui.views.markers.path";//$NON-NLS-1$
 
@@ -55,8 +50,15 @@ public final class MarkerUtils {
 
     public static void addTaskMarker(final IResource resource, final String message,
             final int lineNumber, final int priority) {
-        createMarker(resource, null, message, lineNumber, IMarker.SEVERITY_INFO,
-                TASK_MARKER);
+        final IMarker marker = createMarker(resource, null, message, lineNumber,
+                IMarker.SEVERITY_INFO, TASK_MARKER);
+        if (marker != null) {
+            try {
+                marker.setAttribute(IMarker.PRIORITY, priority);
+            } catch (final CoreException e) {
+                // keep the default priority
+            }
+        }
     }
 
     /**
@@ -321,52 +323,73 @@ public final class MarkerUtils {
         return null;
     }
 
+    /**
+     * Scan the resource for task tags and update its task markers.
+     */
     public static void createTaskMarkers(final IResource resource) {
+        createTaskMarkers(resource, null);
+    }
+
+    /**
+     * Scan the given contents of the resource (read from disk if null) for task
+     * tags and update its task markers.
+     */
+    public static void createTaskMarkers(final IResource resource,
+            final byte[] contents) {
         if (SystemConfiguration.hasFeatureEnabled("erlide.skip.tasks")) {
+            removeTaskMarkers(resource);
             return;
         }
-        getScanMarkersFor(resource);
+        byte[] bytes = contents;
+        if (bytes == null) {
+            if (resource.getLocation() == null) {
+                return;
+            }
+            try {
+                bytes = Files.toByteArray(resource.getLocation().toFile());
+            } catch (final IOException e) {
+                return;
+            }
+        }
+        updateTaskMarkers(resource, TaskTagScanner.scan(bytes, getCharset(resource)));
     }
 
-    public static void getScanMarkersFor(final IResource resource) {
-        try (final BufferedReader reader = new BufferedReader(
-                new FileReader(resource.getLocation().toPortableString()))) {
-            String line = reader.readLine();
-            final List<Pair<String, Integer>> cl = new ArrayList<>();
-            int numline = 0;
-            while (line != null) {
-                if (line.matches(TODO_XXX_FIXME_PATTERN)) {
-                    cl.add(new Pair<>(line, numline));
+    /**
+     * Make the task markers of the resource match the tasks, deleting the
+     * markers of tasks that are gone and creating those of new tasks only.
+     */
+    public static void updateTaskMarkers(final IResource resource,
+            final List<Task> tasks) {
+        final Multiset<Task> missing = HashMultiset.create(tasks);
+        for (final IMarker marker : getTasksFor(resource)) {
+            final Task task = new Task(marker.getAttribute(IMarker.LINE_NUMBER, -1),
+                    marker.getAttribute(IMarker.MESSAGE, ""), marker.getAttribute(
+                            IMarker.PRIORITY, IMarker.PRIORITY_NORMAL));
+            if (!missing.remove(task)) {
+                try {
+                    marker.delete();
+                } catch (final CoreException e) {
+                    // not much to do
                 }
-                numline++;
-                line = reader.readLine();
             }
-
-            for (final Pair<String, Integer> c : cl) {
-                createTaskMarkerAtText(resource, c.getValue(), c.getKey(), TODO_TAG,
-                        IMarker.PRIORITY_NORMAL);
-                createTaskMarkerAtText(resource, c.getValue(), c.getKey(), XXX_TAG,
-                        IMarker.PRIORITY_NORMAL);
-                createTaskMarkerAtText(resource, c.getValue(), c.getKey(), FIXME_TAG,
-                        IMarker.PRIORITY_HIGH);
+        }
+        for (final Task task : tasks) {
+            if (missing.remove(task)) {
+                addTaskMarker(resource, task.getMessage(), task.getLine(),
+                        task.getPriority());
             }
-        } catch (final IOException e) {
         }
     }
 
-    private static void createTaskMarkerAtText(final IResource resource, final int line,
-            final String text, final String tag, final int prio) {
-        if (text.contains(tag)) {
-            final int ix = text.indexOf(tag);
-            final String msg = text.substring(ix);
-            int dl = 0;
-            for (int i = 0; i < ix; i++) {
-                if (text.charAt(i) == '\n') {
-                    dl++;
-                }
+    private static Charset getCharset(final IResource resource) {
+        if (resource instanceof IFile) {
+            try {
+                return Charset.forName(((IFile) resource).getCharset());
+            } catch (final CoreException | IllegalArgumentException e) {
+                // use the default
             }
-            addTaskMarker(resource, msg, line + 1 + dl, prio);
         }
+        return Charset.defaultCharset();
     }
 
 }
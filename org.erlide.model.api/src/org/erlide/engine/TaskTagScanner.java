@@ -0,0 +1,190 @@
+package org.erlide.engine;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.resources.IMarker;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+/**
+ * Finds the task tags (TODO, XXX and FIXME) in the comments of a source file.
+ *
+ * <p>
+ * A line holds tasks if its first comment starts with a tag, possibly after
+ * some blanks. Such a line gets a task for each tag it contains, with the text
+ * from the tag to the end of the line as message. The file is scanned once,
+ * byte by byte, without decoding it: only the messages of the (few) tagged
+ * lines are decoded.
+ * </p>
+ */
+public final class TaskTagScanner {
+
+    // do this to keep them from being detected as real tasks by Jenkins plugin
+    private static final String[] TAGS = { "T" + "ODO", "X" + "XX", "F" + "IXME" };
+    private static final int[] PRIORITIES = { IMarker.PRIORITY_NORMAL,
+            IMarker.PRIORITY_NORMAL, IMarker.PRIORITY_HIGH };
+    private static final byte[][] TAG_BYTES = new byte[TAGS.length][];
+    static {
+        for (int i = 0; i < TAGS.length; i++) {
+            TAG_BYTES[i] = TAGS[i].getBytes(Charsets.US_ASCII);
+        }
+    }
+
+    public static final class Task {
+        private final int line;
+        private final String message;
+        private final int priority;
+
+        public Task(final int line, final String message, final int priority) {
+            this.line = line;
+            this.message = message;
+            this.priority = priority;
+        }
+
+        /**
+         * @return the 1-based line number
+         */
+        public int getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        // the priority follows from the message
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Task)) {
+                return false;
+            }
+            final Task other = (Task) obj;
+            return line == other.line && message.equals(other.message);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(line, message);
+        }
+
+        @Override
+        public String toString() {
+            return line + ": " + message;
+        }
+    }
+
+    private TaskTagScanner() {
+    }
+
+    public static List<Task> scan(final String text) {
+        return scan(text.getBytes(Charsets.UTF_8), Charsets.UTF_8);
+    }
+
+    public static List<Task> scan(final byte[] contents, final Charset charset) {
+        byte[] bytes = contents;
+        Charset cs = charset;
+        if ("%".getBytes(cs).length != 1) {
+            // not ASCII compatible (UTF-16 and the like), rare enough
+            bytes = new String(contents, cs).getBytes(Charsets.UTF_8);
+            cs = Charsets.UTF_8;
+        }
+        List<Task> result = null;
+        final int n = bytes.length;
+        int line = 1;
+        int i = 0;
+        while (i < n) {
+            final int start = i;
+            while (i < n && bytes[i] != '%' && !isEol(bytes[i])) {
+                i++;
+            }
+            if (i < n && bytes[i] == '%') {
+                while (i < n && bytes[i] == '%') {
+                    i++;
+                }
+                while (i < n && (bytes[i] == ' ' || bytes[i] == '\t')) {
+                    i++;
+                }
+                final boolean tagged = tagAt(bytes, i, n) >= 0;
+                while (i < n && !isEol(bytes[i])) {
+                    i++;
+                }
+                if (tagged) {
+                    if (result == null) {
+                        result = Lists.newArrayList();
+                    }
+                    addTasks(result, bytes, start, i, line, cs);
+                }
+            }
+            if (i < n && bytes[i] == '\r' && i + 1 < n && bytes[i + 1] == '\n') {
+                i++;
+            }
+            i++;
+            line++;
+        }
+        return result == null ? Collections.<Task> emptyList() : result;
+    }
+
+    private static boolean isEol(final byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * @return the index of the tag that starts at offset, or -1
+     */
+    private static int tagAt(final byte[] bytes, final int offset, final int end) {
+        if (offset >= end) {
+            return -1;
+        }
+        // the tags start with different letters
+        final int tag;
+        switch (bytes[offset]) {
+        case 'T':
+            tag = 0;
+            break;
+        case 'X':
+            tag = 1;
+            break;
+        case 'F':
+            tag = 2;
+            break;
+        default:
+            return -1;
+        }
+        return matches(bytes, offset, end, TAG_BYTES[tag]) ? tag : -1;
+    }
+
+    private static boolean matches(final byte[] bytes, final int offset,
+            final int end, final byte[] tag) {
+        if (offset + tag.length > end) {
+            return false;
+        }
+        for (int j = 0; j < tag.length; j++) {
+            if (bytes[offset + j] != tag[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addTasks(final List<Task> result, final byte[] bytes,
+            final int start, final int end, final int line, final Charset charset) {
+        for (int tag = 0; tag < TAGS.length; tag++) {
+            for (int i = start; i < end; i++) {
+                if (matches(bytes, i, end, TAG_BYTES[tag])) {
+                    result.add(new Task(line, new String(bytes, i, end - i, charset),
+                            PRIORITIES[tag]));
+                    break;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,275 @@
+package org.erlide.engine.model.builder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * The include relations between the files of a project, in both directions:
+ * the names each source or header file includes and the files that include a
+ * given name. Files are project relative paths; included names are reduced to
+ * their last segment, which is how the builder matches them to headers.
+ *
+ * <p>
+ * The graph is maintained by the builder. A full build records every file of
+ * the project and makes the graph <i>complete</i>; incremental builds update
+ * the files that changed. Until the graph is complete, callers have to fall
+ * back to looking at the modules themselves. The graph can be saved to a file
+ * and restored in a later session, so that it is complete from the first
+ * incremental build.
+ * </p>
+ */
+public class IncludeGraph {
+
+    private static final String VERSION = "1";
+    private static final boolean caseSensitive = EFS.getLocalFileSystem()
+            .isCaseSensitive();
+
+    private static final ConcurrentMap<String, IncludeGraph> graphs = Maps
+            .newConcurrentMap();
+
+    public static IncludeGraph get(final IProject project) {
+        final String key = project.getName();
+        IncludeGraph graph = graphs.get(key);
+        if (graph == null) {
+            graph = new IncludeGraph();
+            final IncludeGraph old = graphs.putIfAbsent(key, graph);
+            if (old != null) {
+                graph = old;
+            }
+        }
+        return graph;
+    }
+
+    public static void remove(final IProject project) {
+        graphs.remove(project.getName());
+    }
+
+    // file -> keys of the names it includes
+    private final Map<IPath, Set<String>> includes = Maps.newHashMap();
+    // key of an included name -> files that include it
+    private final Map<String, Set<IPath>> includedBy = Maps.newHashMap();
+    // key of a header's name -> headers with that name
+    private final Map<String, Set<IPath>> headers = Maps.newHashMap();
+    private boolean complete;
+    private boolean dirty;
+    private boolean restored;
+
+    /**
+     * Record the names included by a file, replacing what was known about it.
+     * Files with the "hrl" extension are also recorded as headers.
+     */
+    public synchronized void setIncludes(final IPath file,
+            final Collection<String> includedNames) {
+        unlink(file);
+        final Set<String> keys = Sets.newLinkedHashSet();
+        for (final String name : includedNames) {
+            keys.add(key(name));
+        }
+        includes.put(file, keys);
+        for (final String k : keys) {
+            multiPut(includedBy, k, file);
+        }
+        if ("hrl".equals(file.getFileExtension())) {
+            multiPut(headers, key(file.lastSegment()), file);
+        }
+        dirty = true;
+    }
+
+    public synchronized void remove(final IPath file) {
+        unlink(file);
+        dirty = true;
+    }
+
+    /**
+     * Forget everything, before a full build records the project again.
+     */
+    public synchronized void clear() {
+        includes.clear();
+        includedBy.clear();
+        headers.clear();
+        complete = false;
+        dirty = true;
+    }
+
+    public synchronized void setComplete() {
+        complete = true;
+        dirty = true;
+    }
+
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the names included by the file, or null if it isn't known.
+     */
+    public synchronized Collection<String> getIncludes(final IPath file) {
+        final Set<String> result = includes.get(file);
+        return result == null ? null : Collections.unmodifiableSet(Sets
+                .newLinkedHashSet(result));
+    }
+
+    /**
+     * @return the first known header with the given (last segment of the)
+     *         name, or null.
+     */
+    public synchronized IPath findHeader(final String name) {
+        final Set<IPath> found = headers.get(key(name));
+        return found == null || found.isEmpty() ? null : found.iterator().next();
+    }
+
+    /**
+     * The files that include the header with the given name, directly or, if
+     * <code>transitive</code>, through other headers.
+     */
+    public synchronized Set<IPath> getDependents(final String name,
+            final boolean transitive) {
+        final Set<IPath> result = Sets.newLinkedHashSet();
+        final Set<String> seen = Sets.newHashSet();
+        final Deque<String> todo = new ArrayDeque<>();
+        todo.add(key(name));
+        while (!todo.isEmpty()) {
+            final String k = todo.remove();
+            if (!seen.add(k)) {
+                continue;
+            }
+            final Set<IPath> files = includedBy.get(k);
+            if (files == null) {
+                continue;
+            }
+            for (final IPath file : files) {
+                if (result.add(file) && transitive
+                        && "hrl".equals(file.getFileExtension())) {
+                    todo.add(key(file.lastSegment()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read a graph saved by {@link #save(File)}, the first time this is called.
+     * Does nothing if the graph already knows about the project.
+     */
+    public synchronized void restore(final File file) throws IOException {
+        if (restored) {
+            return;
+        }
+        restored = true;
+        if (complete || !includes.isEmpty() || !file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), Charsets.UTF_8))) {
+            if (!VERSION.equals(reader.readLine())) {
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final List<String> fields = Lists.newArrayList(Splitter.on('\t').split(
+                        line));
+                setIncludes(Path.fromPortableString(fields.get(0)),
+                        fields.subList(1, fields.size()));
+            }
+        }
+        complete = true;
+        dirty = false;
+    }
+
+    /**
+     * Write the graph, if it is complete and has changed since it was last
+     * saved or restored.
+     */
+    public synchronized void save(final File file) throws IOException {
+        if (!dirty) {
+            return;
+        }
+        if (!complete) {
+            file.delete();
+            dirty = false;
+            return;
+        }
+        file.getParentFile().mkdirs();
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), Charsets.UTF_8))) {
+            writer.write(VERSION);
+            writer.newLine();
+            for (final Map.Entry<IPath, Set<String>> entry : includes.entrySet()) {
+                writer.write(entry.getKey().toPortableString());
+                for (final String name : entry.getValue()) {
+                    writer.write('\t');
+                    writer.write(name);
+                }
+                writer.newLine();
+            }
+        }
+        dirty = false;
+    }
+
+    private void unlink(final IPath file) {
+        final Set<String> old = includes.remove(file);
+        if (old != null) {
+            for (final String k : old) {
+                multiRemove(includedBy, k, file);
+            }
+        }
+        if ("hrl".equals(file.getFileExtension())) {
+            multiRemove(headers, key(file.lastSegment()), file);
+        }
+    }
+
+    private static <K, V> void multiPut(final Map<K, Set<V>> map, final K key,
+            final V value) {
+        Set<V> values = map.get(key);
+        if (values == null) {
+            values = Sets.newLinkedHashSet();
+            map.put(key, values);
+        }
+        values.add(value);
+    }
+
+    private static <K, V> void multiRemove(final Map<K, Set<V>> map, final K key,
+            final V value) {
+        final Set<V> values = map.get(key);
+        if (values != null) {
+            values.remove(value);
+            if (values.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    private static String key(final String name) {
+        final int i = name.lastIndexOf('/');
+        final String last = i == -1 ? name : name.substring(i + 1);
+        // same equality as ResourceUtil.samePath
+        return caseSensitive ? last : last.toLowerCase(Locale.ROOT);
+    }
+
+}
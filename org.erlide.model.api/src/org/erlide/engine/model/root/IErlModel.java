@@ -160,7 +160,5 @@ public interface IErlModel extends IErlElement, IOpenable, IParent, IErlElementL
 
     void putEdited(String path, IErlModule module);
 
-    Object getModelLock();
-
     IErlElementDelta createElementDelta(int kind, int flags, IErlElement element);
 }
@@ -119,6 +119,16 @@ public interface ISourceUnit {
 
     void setComments(Collection<? extends IErlComment> comments);
 
+    /**
+     * Returns the changes that the last parse made to the children and
+     * comments of the module. Elements that only moved are not in it.
+     *
+     * @return the delta, or null if it isn't known
+     */
+    IErlElementDelta getParseDelta();
+
+    void setParseDelta(IErlElementDelta delta);
+
     boolean isOnSourcePath();
 
     boolean isOnIncludePath();
@@ -127,6 +137,12 @@ public interface ISourceUnit {
 
     String getScannerName();
 
+    /**
+     * Send pending text changes to the backend scanner, if there is one.
+     * Called before backend calls that read it by {@link #getScannerName()}.
+     */
+    void flushScanner();
+
     ScannerService getScanner();
 
     void createScanner();
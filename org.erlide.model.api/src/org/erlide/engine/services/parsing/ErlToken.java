@@ -44,20 +44,6 @@ public final class ErlToken {
 
     public static final ErlToken EOF = new ErlToken(KIND_OTHER);
 
-    // special for lightscanstring
-    // <<(kind_small(Kind)), L:24, O:24, G:24>>
-    public ErlToken(final byte[] bytes, final int index, final int offset0) {
-        kind = bytes[index];
-        line = int24(bytes, index + 1);
-        offset = int24(bytes, index + 4) + offset0;
-        length = int24(bytes, index + 7);
-    }
-
-    private int int24(final byte[] bytes, final int index) {
-        return (0xff & bytes[index]) << 16 | (0xff & bytes[index + 1]) << 8
-                | 0xff & bytes[index + 2];
-    }
-
     public ErlToken(final OtpErlangTuple e) {
         // fTuple = e;
         if (TRACE) {
@@ -149,6 +135,8 @@ public final class ErlToken {
 
     public ErlToken(final int kind, final int offset, final int length) {
         this.kind = kind;
+        this.offset = offset;
+        this.length = length;
     }
 
     public int getKind() {
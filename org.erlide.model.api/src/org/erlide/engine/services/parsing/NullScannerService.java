@@ -1,15 +1,12 @@
 package org.erlide.engine.services.parsing;
 
-import java.util.List;
-
-import com.google.common.collect.Lists;
-
 public class NullScannerService implements SimpleScannerService {
 
     @Override
-    public List<ErlToken> lightScanString(final String string, final int offset)
+    public TokenBuffer lightScanString(final String string, final int offset)
             throws ScannerException {
-        final ErlToken token = new ErlToken(ErlToken.KIND_OTHER, offset, string.length());
-        return Lists.newArrayList(token);
+        final TokenBuffer tokens = new TokenBuffer(1);
+        tokens.add(ErlToken.KIND_OTHER, 1, offset, string.length());
+        return tokens;
     }
 }
@@ -8,6 +8,12 @@ public interface ScannerService extends IDisposable {
 
     void replaceText(final int offset, final int removeLength, final String newText);
 
+    /**
+     * Send the text changes that are still pending to the backend. Called
+     * before anything reads the scanner's state there.
+     */
+    void flush();
+
     ErlToken getTokenAt(final int offset);
 
     void addref();
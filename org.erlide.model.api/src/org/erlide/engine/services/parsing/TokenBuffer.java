@@ -0,0 +1,115 @@
+package org.erlide.engine.services.parsing;
+
+import java.util.Arrays;
+
+/**
+ * The tokens of a light scan, packed in parallel arrays instead of one
+ * {@link ErlToken} per token: a token costs 13 bytes and reading it allocates
+ * nothing. Tokens are accessed by index, in text order.
+ */
+public final class TokenBuffer {
+
+    // the packed format of erlide_scanner:light_scan_string,
+    // <<Kind:8, Line:24, Offset:24, Length:24>>
+    private static final int PACKED_SIZE = 10;
+
+    private byte[] kinds;
+    private int[] lines;
+    private int[] offsets;
+    private int[] lengths;
+    private int size;
+
+    public TokenBuffer(final int capacity) {
+        kinds = new byte[capacity];
+        lines = new int[capacity];
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+    }
+
+    /**
+     * Unpack the tokens returned by the backend.
+     *
+     * @param offset
+     *            added to the offset of each token
+     */
+    public static TokenBuffer fromPacked(final byte[] bytes, final int offset) {
+        final int n = bytes.length / PACKED_SIZE;
+        final TokenBuffer result = new TokenBuffer(n);
+        for (int i = 0; i < n; i++) {
+            final int index = i * PACKED_SIZE;
+            result.add(bytes[index], int24(bytes, index + 1),
+                    int24(bytes, index + 4) + offset, int24(bytes, index + 7));
+        }
+        return result;
+    }
+
+    private static int int24(final byte[] bytes, final int index) {
+        return (0xff & bytes[index]) << 16 | (0xff & bytes[index + 1]) << 8 | 0xff
+                & bytes[index + 2];
+    }
+
+    /**
+     * @param kind
+     *            one of the ErlToken kinds, or the character of a one character
+     *            token; it must fit in a byte
+     */
+    public void add(final int kind, final int line, final int offset, final int length) {
+        if (size == kinds.length) {
+            final int capacity = Math.max(16, size * 2);
+            kinds = Arrays.copyOf(kinds, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        kinds[size] = (byte) kind;
+        lines[size] = line;
+        offsets[size] = offset;
+        lengths[size] = length;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getKind(final int index) {
+        return kinds[check(index)];
+    }
+
+    public int getLine(final int index) {
+        return lines[check(index)];
+    }
+
+    public int getOffset(final int index) {
+        return offsets[check(index)];
+    }
+
+    public int getLength(final int index) {
+        return lengths[check(index)];
+    }
+
+    private int check(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index + " of " + size);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append('{').append(kinds[i]).append(", ").append(lines[i]).append('/')
+                    .append(offsets[i]).append('+').append(lengths[i]).append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+}
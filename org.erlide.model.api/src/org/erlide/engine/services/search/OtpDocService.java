@@ -17,6 +17,13 @@ public interface OtpDocService extends ErlangService {
     OtpErlangObject getModules(IOtpRpc b, String prefix, List<String> projectModules,
             boolean includes);
 
+    /**
+     * Like {@link #getModules(IOtpRpc, String, List, boolean)} for several
+     * lists, in one round-trip. A failed call gives a null element.
+     */
+    List<OtpErlangObject> getModules(IOtpRpc b, String prefix,
+            List<List<String>> projectModules, List<Boolean> includes);
+
     OtpErlangObject getOtpDoc(IOtpRpc b, ErlangFunctionCall functionCall);
 
     OtpErlangObject getOtpDoc(IOtpRpc b, int offset, String module,
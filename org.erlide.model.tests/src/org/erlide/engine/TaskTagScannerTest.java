@@ -0,0 +1,50 @@
+package org.erlide.engine;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+
+import org.eclipse.core.resources.IMarker;
+import org.erlide.engine.TaskTagScanner.Task;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class TaskTagScannerTest {
+
+    // keep them from being detected as real tasks
+    private static final String TODO = "T" + "ODO";
+    private static final String FIXME = "F" + "IXME";
+
+    @Test
+    public void tagsInComments() {
+        final List<Task> tasks = TaskTagScanner.scan("-module(m).\n%% " + TODO
+                + " one\r\nf() -> ok. % " + FIXME + " two\rg() -> ok.\n%\t" + TODO
+                + " and " + FIXME);
+        assertThat(tasks, contains(new Task(2, TODO + " one", 0), new Task(3, FIXME
+                + " two", 0), new Task(5, TODO + " and " + FIXME, 0), new Task(5,
+                FIXME, 0)));
+        assertThat(tasks.get(0).getPriority(), is(IMarker.PRIORITY_NORMAL));
+        assertThat(tasks.get(1).getPriority(), is(IMarker.PRIORITY_HIGH));
+    }
+
+    @Test
+    public void tagMustStartTheFirstComment() {
+        assertThat(TaskTagScanner.scan("f() -> \"" + TODO + "\". % note\n"
+                + "% see " + TODO + "\n%x% " + TODO + "\n" + TODO + "\n"),
+                is(empty()));
+    }
+
+    @Test
+    public void decodesMessages() {
+        final String text = "% " + TODO + " fix café\n";
+        assertThat(TaskTagScanner.scan(text.getBytes(Charsets.ISO_8859_1),
+                Charsets.ISO_8859_1), contains(new Task(1, TODO + " fix café", 0)));
+        assertThat(TaskTagScanner.scan(text.getBytes(Charsets.UTF_16),
+                Charsets.UTF_16), contains(new Task(1, TODO + " fix café", 0)));
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.erlide.engine.internal.services.parsing;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+
+import org.erlide.engine.internal.services.parsing.EditBatch.Edit;
+import org.junit.Test;
+
+public class EditBatchTest {
+
+    private static final String TEXT = "f(X) -> X + 1.\n";
+
+    @Test
+    public void typingIsOneEdit() {
+        final EditBatch batch = new EditBatch();
+        String text = TEXT;
+        for (final char c : "foo".toCharArray()) {
+            final int offset = 12 + text.length() - TEXT.length();
+            text = add(batch, text, offset, 0, String.valueOf(c));
+        }
+        text = add(batch, text, 14, 1, "");
+        text = add(batch, text, 14, 0, "x");
+        checkBatch(batch, 1, text);
+    }
+
+    @Test
+    public void deletingPastTheTypedText() {
+        final EditBatch batch = new EditBatch();
+        String text = add(batch, TEXT, 8, 1, "Yy");
+        text = add(batch, text, 6, 5, "");
+        text = add(batch, text, 5, 1, "=");
+        checkBatch(batch, 1, text);
+    }
+
+    @Test
+    public void undoneEditsVanish() {
+        final EditBatch batch = new EditBatch();
+        String text = add(batch, TEXT, 3, 0, "ab");
+        text = add(batch, text, 3, 2, "");
+        checkBatch(batch, 0, text);
+    }
+
+    @Test
+    public void separateEditsStayInOrder() {
+        final EditBatch batch = new EditBatch();
+        String text = add(batch, TEXT, 0, 1, "g");
+        text = add(batch, text, 10, 1, "-");
+        text = add(batch, text, 2, 0, "Y, ");
+        checkBatch(batch, 3, text);
+    }
+
+    private static String add(final EditBatch batch, final String text,
+            final int offset, final int removeLength, final String newText) {
+        batch.add(offset, removeLength, newText);
+        return apply(text, offset, removeLength, newText);
+    }
+
+    private static String apply(final String text, final int offset,
+            final int removeLength, final String newText) {
+        return text.substring(0, offset) + newText
+                + text.substring(offset + removeLength);
+    }
+
+    private static void checkBatch(final EditBatch batch, final int size,
+            final String expected) {
+        final List<Edit> edits = batch.drain();
+        assertThat(edits.size(), is(size));
+        String text = TEXT;
+        for (final Edit edit : edits) {
+            text = apply(text, edit.offset, edit.removeLength, edit.text);
+        }
+        assertThat(text, is(expected));
+        assertThat(batch.isEmpty(), is(true));
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.erlide.engine.internal.services.parsing;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+
+import org.erlide.engine.services.parsing.ErlToken;
+import org.erlide.engine.services.parsing.TokenBuffer;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ErlLexerTest {
+
+    @Test
+    public void kinds() {
+        assertThat(kinds("f(X) -> case X of 'a b' -> ?M; _ -> \"s\\\"\" end."),
+                contains(ErlToken.KIND_ATOM, (int) '(', ErlToken.KIND_VAR, (int) ')',
+                        ErlToken.KIND_WHITESPACE, ErlToken.KIND_ARROW,
+                        ErlToken.KIND_WHITESPACE, ErlToken.KIND_KEYWORD,
+                        ErlToken.KIND_WHITESPACE, ErlToken.KIND_VAR,
+                        ErlToken.KIND_WHITESPACE, ErlToken.KIND_KEYWORD,
+                        ErlToken.KIND_WHITESPACE, ErlToken.KIND_ATOM,
+                        ErlToken.KIND_WHITESPACE, ErlToken.KIND_ARROW,
+                        ErlToken.KIND_WHITESPACE, ErlToken.KIND_MACRO, (int) ';',
+                        ErlToken.KIND_WHITESPACE, ErlToken.KIND_VAR,
+                        ErlToken.KIND_WHITESPACE, ErlToken.KIND_ARROW,
+                        ErlToken.KIND_WHITESPACE, ErlToken.KIND_STRING,
+                        ErlToken.KIND_WHITESPACE, ErlToken.KIND_KEYWORD, (int) '.'));
+    }
+
+    @Test
+    public void numbersAndChars() {
+        assertThat(kinds("1 2.5e-3 16#fF 1_000 $a $\\n $\\x{41} 3.x"), contains(
+                ErlToken.KIND_INTEGER, ErlToken.KIND_WHITESPACE, ErlToken.KIND_FLOAT,
+                ErlToken.KIND_WHITESPACE, ErlToken.KIND_INTEGER,
+                ErlToken.KIND_WHITESPACE, ErlToken.KIND_INTEGER,
+                ErlToken.KIND_WHITESPACE, ErlToken.KIND_CHAR, ErlToken.KIND_WHITESPACE,
+                ErlToken.KIND_CHAR, ErlToken.KIND_WHITESPACE, ErlToken.KIND_CHAR,
+                ErlToken.KIND_WHITESPACE, ErlToken.KIND_INTEGER, (int) '.',
+                ErlToken.KIND_ATOM));
+    }
+
+    @Test
+    public void offsetsAndLengths() {
+        final TokenBuffer tokens = ErlLexer.scan("A =:= <<1>> % c\n", 10);
+        assertThat(tokens.size(), is(10));
+        assertThat(tokens.getOffset(2), is(12));
+        assertThat(tokens.getLength(2), is(3));
+        assertThat(tokens.getKind(4), is(ErlToken.KIND_OTHER));
+        assertThat(tokens.getLength(4), is(2));
+        assertThat(tokens.getKind(8), is(ErlToken.KIND_COMMENT));
+        assertThat(tokens.getLength(8), is(3));
+    }
+
+    @Test
+    public void lines() {
+        final TokenBuffer tokens = ErlLexer.scan("a.\n\"b\nc\"\r\n\rd", 0);
+        assertThat(tokens.getLine(0), is(1));
+        assertThat(tokens.getLine(3), is(2));
+        assertThat(tokens.getLine(5), is(5));
+    }
+
+    @Test
+    public void unterminatedStringRunsToTheEnd() {
+        final TokenBuffer tokens = ErlLexer.scan("x(\"abc", 0);
+        assertThat(tokens.getKind(2), is(ErlToken.KIND_STRING));
+        assertThat(tokens.getLength(2), is(4));
+    }
+
+    private static List<Integer> kinds(final String text) {
+        final List<Integer> result = Lists.newArrayList();
+        final TokenBuffer tokens = ErlLexer.scan(text, 0);
+        for (int i = 0; i < tokens.size(); i++) {
+            result.add(tokens.getKind(i));
+        }
+        return result;
+    }
+
+}
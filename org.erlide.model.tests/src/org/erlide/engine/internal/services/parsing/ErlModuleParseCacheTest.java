@@ -0,0 +1,27 @@
+package org.erlide.engine.internal.services.parsing;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.erlide.engine.model.erlang.ErlModelTestBase;
+import org.erlide.engine.model.root.IErlModule;
+import org.erlide.engine.util.ErlideTestUtils;
+import org.junit.Test;
+
+public class ErlModuleParseCacheTest extends ErlModelTestBase {
+
+    @Test
+    public void reopenedModuleIsReadFromCache() throws Exception {
+        final IErlModule m = ErlideTestUtils.createModule(project, "cached.erl",
+                "-module(cached).\n-export([f/0]).\nf() -> ok.\n");
+        final ParseCache cache = ParseCache.getInstance();
+        m.open(null);
+        final int hits = cache.hits();
+        m.close();
+        m.open(null);
+        // a cache hit returns before the backend is asked to parse
+        assertThat(cache.hits(), is(hits + 1));
+        assertThat(m.getChildCount(), is(2));
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.erlide.engine.internal.services.parsing;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import org.erlide.runtime.rpc.IOtpRpc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+public class ErlParserCacheTest {
+
+    private static final String PATH = "/a/m.erl";
+    private static final String TEXT = "-module(m).\n";
+
+    private File dir;
+    private ParseCache cache;
+    private ErlParser parser;
+    // the updateRefs argument of each initial_parse call
+    private final List<Boolean> parses = Lists.newArrayList();
+
+    @Before
+    public void setUp() {
+        dir = Files.createTempDir();
+        cache = new ParseCache(dir, "1.0");
+        parser = new ErlParser((IOtpRpc) Proxy.newProxyInstance(
+                IOtpRpc.class.getClassLoader(), new Class<?>[] { IOtpRpc.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                            final Object[] args) {
+                        // call(timeout, m, f, signature, args)
+                        final Object[] a = (Object[]) args[4];
+                        parses.add((Boolean) a[5]);
+                        return parsed();
+                    }
+                }));
+    }
+
+    @After
+    public void tearDown() {
+        for (final File f : Files.fileTreeTraverser().postOrderTraversal(dir)) {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void cacheIsUsedWithoutSearchServer() {
+        parser.initialParse(cache, "m", PATH, TEXT, "", false);
+        final OtpErlangTuple result = parser.initialParse(cache, "m", PATH, TEXT, "",
+                false);
+        assertThat(parses, contains(false));
+        assertThat(result.elementAt(1), is((OtpErlangObject) new OtpErlangList()));
+    }
+
+    @Test
+    public void searchServerGetsRefsOfCachedModule() {
+        parser.initialParse(cache, "m", PATH, TEXT, "", false);
+        parser.initialParse(cache, "m", PATH, TEXT, "", true);
+        assertThat(parses, contains(false, true));
+    }
+
+    @Test
+    public void cacheIsUsedWhenSearchServerHasRefs() {
+        parser.initialParse(cache, "m", PATH, TEXT, "", true);
+        parser.initialParse(cache, "m", PATH, TEXT, "", true);
+        assertThat(parses, contains(true));
+    }
+
+    private static OtpErlangObject parsed() {
+        final OtpErlangObject[] forms = { new OtpErlangAtom("m"),
+                new OtpErlangList(new OtpErlangAtom("form")), new OtpErlangList() };
+        return new OtpErlangTuple(new OtpErlangObject[] { new OtpErlangAtom("ok"),
+                new OtpErlangTuple(forms) });
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.erlide.engine.internal.services.parsing;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.collect.Lists;
+
+public class FormMatcherTest {
+
+    @Test
+    public void movedFunctionsAreTheSame() {
+        final OtpErlangObject f = function("f", "f() -> ok.", 3, 40);
+        assertThat(FormMatcher.sameForm(f, function("f", "f() -> ok.", 5, 52), 2, 12),
+                is(true));
+        assertThat(FormMatcher.sameForm(f, function("f", "f() -> ok.", 5, 52), 2, 11),
+                is(false));
+        assertThat(FormMatcher.sameForm(f, function("f", "f() -> no.", 5, 52), 2, 12),
+                is(false));
+        assertThat(FormMatcher.sameForm(f, function("f", "f() -> ok.", 3, 40), 0, 0),
+                is(true));
+    }
+
+    @Test
+    public void onlyTheEditedFormsDiffer() {
+        final List<OtpErlangObject> old = Lists.newArrayList(
+                attribute("module", 1, 0), function("f", "f() -> ok.", 3, 12),
+                function("g", "g() -> ok.", 5, 24), function("h", "h() -> ok.", 7, 36));
+        final OtpErlangList edited = new OtpErlangList(new OtpErlangObject[] {
+                attribute("module", 1, 0), function("f", "f() -> ok.", 3, 12),
+                function("g", "g() ->\n ok.", 5, 24),
+                function("h", "h() -> ok.", 8, 38) });
+        final FormMatcher match = FormMatcher.match(old, edited, false);
+        assertThat(match.prefix, is(2));
+        assertThat(match.suffix, is(1));
+        assertThat(match.lines, is(1));
+        assertThat(match.offset, is(2));
+    }
+
+    @Test
+    public void movedComments() {
+        final OtpErlangObject c = comment(4, 30, "%% hello");
+        assertThat(FormMatcher.sameComment(c, comment(6, 35, "%% hello"), 2, 5),
+                is(true));
+        assertThat(FormMatcher.sameComment(c, comment(6, 35, "%% hullo"), 2, 5),
+                is(false));
+        final FormMatcher match = FormMatcher.match(Lists.newArrayList(c),
+                new OtpErlangList(comment(6, 35, "%% hello")), true);
+        assertThat(match.prefix, is(0));
+        assertThat(match.suffix, is(1));
+    }
+
+    private static OtpErlangObject pos(final int line, final int offset, final int len) {
+        return tuple(tuple(new OtpErlangLong(line), new OtpErlangLong(line),
+                new OtpErlangLong(offset)), new OtpErlangLong(len));
+    }
+
+    private static OtpErlangObject namePos(final int line, final int offset,
+            final int len) {
+        return tuple(tuple(new OtpErlangLong(line), new OtpErlangLong(offset)),
+                new OtpErlangLong(len));
+    }
+
+    private static OtpErlangObject function(final String name, final String text,
+            final int line, final int offset) {
+        final OtpErlangObject clause = tuple(new OtpErlangAtom("clause"),
+                pos(line, offset, text.length()), new OtpErlangAtom(name),
+                new OtpErlangList(), new OtpErlangString(text),
+                namePos(line, offset, name.length()));
+        return tuple(new OtpErlangAtom("function"), pos(line, offset, text.length()),
+                new OtpErlangAtom(name), new OtpErlangLong(0), new OtpErlangList(),
+                new OtpErlangString(""), new OtpErlangList(clause),
+                namePos(line, offset, name.length()), new OtpErlangAtom("false"));
+    }
+
+    private static OtpErlangObject attribute(final String name, final int line,
+            final int offset) {
+        return tuple(new OtpErlangAtom("attribute"), pos(line, offset, 11),
+                new OtpErlangAtom(name), new OtpErlangAtom("m"),
+                new OtpErlangString("m"));
+    }
+
+    private static OtpErlangObject comment(final int line, final int offset,
+            final String text) {
+        final OtpErlangLong lineL = new OtpErlangLong(line);
+        return tuple(new OtpErlangAtom("token"), new OtpErlangAtom("comment"), lineL,
+                new OtpErlangLong(offset), new OtpErlangLong(text.length()),
+                new OtpErlangAtom("u"), new OtpErlangString(text), lineL,
+                new OtpErlangLong(1));
+    }
+
+    private static OtpErlangTuple tuple(final OtpErlangObject... elements) {
+        return new OtpErlangTuple(elements);
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.erlide.engine.internal.services.parsing;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class ParseCacheTest {
+
+    private File dir;
+    private ParseCache cache;
+
+    @Before
+    public void setUp() {
+        dir = Files.createTempDir();
+        cache = new ParseCache(dir, "1.0");
+    }
+
+    @After
+    public void tearDown() {
+        for (final File f : Files.fileTreeTraverser().postOrderTraversal(dir)) {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void keys() {
+        final String key = cache.key("/a/m.erl", "-module(m).");
+        assertThat(cache.key("/a/m.erl", "-module(m)."), is(key));
+        assertThat(cache.key("/a/m.erl", "-module(m). "), is(not(key)));
+        assertThat(cache.key("/b/m.erl", "-module(m)."), is(not(key)));
+        assertThat(new ParseCache(dir, "1.1").key("/a/m.erl", "-module(m)."),
+                is(not(key)));
+    }
+
+    @Test
+    public void storesFormsAndComments() {
+        final OtpErlangList forms = new OtpErlangList(new OtpErlangTuple(
+                new OtpErlangObject[] { new OtpErlangAtom("attribute"),
+                        new OtpErlangLong(1) }));
+        final OtpErlangList comments = new OtpErlangList();
+        cache.put("k", forms, comments);
+        final OtpErlangTuple entry = cache.get("k");
+        assertThat(entry.elementAt(0), is((OtpErlangObject) forms));
+        assertThat(entry.elementAt(1), is((OtpErlangObject) comments));
+        assertThat(cache.get("other"), is(nullValue()));
+    }
+
+    @Test
+    public void badEntriesAreDropped() throws Exception {
+        final File file = new File(dir, "k.model");
+        Files.write("garbage", file, Charsets.UTF_8);
+        assertThat(cache.get("k"), is(nullValue()));
+        assertThat(file.exists(), is(false));
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.erlide.engine.model.builder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IncludeGraphTest {
+
+    private final IPath a = new Path("src/a.erl");
+    private final IPath b = new Path("src/b.erl");
+    private final IPath x = new Path("include/x.hrl");
+    private final IPath z = new Path("include/z.hrl");
+    private IncludeGraph graph;
+
+    @Before
+    public void setUp() {
+        graph = new IncludeGraph();
+        graph.setIncludes(a, Arrays.asList("x.hrl", "app/include/y.hrl"));
+        graph.setIncludes(b, Arrays.asList("y.hrl"));
+        graph.setIncludes(x, Arrays.asList("z.hrl"));
+        graph.setIncludes(z, Collections.<String> emptyList());
+    }
+
+    @Test
+    public void dependents() {
+        assertThat(graph.getDependents("z.hrl", false), contains(x));
+        assertThat(graph.getDependents("z.hrl", true), containsInAnyOrder(x, a));
+        assertThat(graph.getDependents("y.hrl", true), containsInAnyOrder(a, b));
+        assertThat(graph.getDependents("a.erl", true), is(empty()));
+    }
+
+    @Test
+    public void headers() {
+        assertThat(graph.findHeader("z.hrl"), is(z));
+        assertThat(graph.findHeader("y.hrl"), is(nullValue()));
+        graph.remove(x);
+        assertThat(graph.findHeader("x.hrl"), is(nullValue()));
+        assertThat(graph.getDependents("z.hrl", true), is(empty()));
+    }
+
+    @Test
+    public void updateReplacesIncludes() {
+        graph.setIncludes(a, Arrays.asList("z.hrl"));
+        assertThat(graph.getDependents("x.hrl", true), is(empty()));
+        assertThat(graph.getDependents("z.hrl", false), containsInAnyOrder(x, a));
+    }
+
+    @Test
+    public void saveAndRestore() throws Exception {
+        final File file = File.createTempFile("includes", null);
+        try {
+            graph.setComplete();
+            graph.save(file);
+            final IncludeGraph restored = new IncludeGraph();
+            restored.restore(file);
+            assertThat(restored.isComplete(), is(true));
+            assertThat(restored.getIncludes(a), contains("x.hrl", "y.hrl"));
+            assertThat(restored.getDependents("z.hrl", true), containsInAnyOrder(x, a));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void incompleteGraphIsNotSaved() throws Exception {
+        final File file = File.createTempFile("includes", null);
+        graph.save(file);
+        assertThat(file.exists(), is(false));
+        final IncludeGraph restored = new IncludeGraph();
+        restored.restore(file);
+        assertThat(restored.isComplete(), is(false));
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.erlide.engine.model.erlang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.erlide.engine.model.ErlElementKind;
+import org.erlide.engine.model.IErlElement;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Reads element children while they are being replaced, as the reconciler does
+ * while outline, search and builder read the model. Every read must see either
+ * all the children or none of them.
+ */
+public class ErlElementConcurrencyTest extends ErlModelTestBase {
+
+    private static final int READERS = 4;
+    private static final int WRITES = 20000;
+
+    @Test
+    public void readersSeeConsistentChildrenWhileWriting() throws Exception {
+        module.open(null);
+        final List<IErlElement> children = module.getChildren();
+        assertEquals(3, children.size());
+
+        final ExecutorService pool = Executors.newFixedThreadPool(READERS + 1);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final CountDownLatch go = new CountDownLatch(1);
+        final List<Future<Void>> readers = Lists.newArrayList();
+        for (int i = 0; i < READERS; i++) {
+            readers.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    go.await();
+                    while (!stop.get()) {
+                        final int count = module.getChildCount();
+                        assertTrue(count == 0 || count == 3);
+                        final List<IErlElement> kids = module.getChildren();
+                        assertTrue(kids.isEmpty() || kids.equals(children));
+                        final int attrs = module
+                                .getChildrenOfKind(ErlElementKind.ATTRIBUTE).size();
+                        assertTrue(attrs == 0 || attrs == 2);
+                    }
+                    return null;
+                }
+            }));
+        }
+        final Future<?> writer = pool.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                go.await();
+                try {
+                    for (int i = 0; i < WRITES; i++) {
+                        module.setChildren(null);
+                        module.setChildren(children);
+                    }
+                } finally {
+                    stop.set(true);
+                }
+                return null;
+            }
+        });
+        go.countDown();
+        try {
+            writer.get(30, TimeUnit.SECONDS);
+            for (final Future<Void> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            stop.set(true);
+            pool.shutdownNow();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+            module.setChildren(children);
+        }
+        assertEquals(children, module.getChildren());
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.erlide.engine.model.erlang;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.erlide.engine.model.ErlElementKind;
+import org.erlide.engine.model.IErlElement;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Benchmark for reading element children while they are being replaced, as
+ * the reconciler does while outline, search and builder read the model. Prints
+ * the read throughput for 1, 2, 4... threads up to the number of cores, which
+ * should grow with the number of threads since reads don't lock.
+ * <p>
+ * It only measures; {@link ErlElementConcurrencyTest} checks what the readers
+ * see. The name keeps it out of the regular test runs, so run it by hand.
+ */
+public class ErlElementReadBenchmark extends ErlModelTestBase {
+
+    private static final long RUN_MILLIS = 500;
+
+    @Test
+    public void readThroughput() throws Exception {
+        module.open(null);
+        final List<IErlElement> children = module.getChildren();
+        assertEquals(3, children.size());
+
+        final int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            final long reads = run(threads, children);
+            System.out.format("model children: %d reader(s), %d reads/s%n", threads,
+                    reads * 1000 / RUN_MILLIS);
+        }
+    }
+
+    private long run(final int readers, final List<IErlElement> children)
+            throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(readers + 1);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final CountDownLatch go = new CountDownLatch(1);
+        final List<Future<Long>> results = Lists.newArrayList();
+        for (int i = 0; i < readers; i++) {
+            results.add(pool.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    go.await();
+                    long n = 0;
+                    while (!stop.get()) {
+                        module.getChildCount();
+                        module.getChildren();
+                        module.getChildrenOfKind(ErlElementKind.ATTRIBUTE);
+                        module.hasChildrenOfKind(ErlElementKind.FUNCTION);
+                        n++;
+                    }
+                    return n;
+                }
+            }));
+        }
+        final Future<?> writer = pool.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                go.await();
+                while (!stop.get()) {
+                    module.setChildren(null);
+                    module.setChildren(children);
+                }
+                return null;
+            }
+        });
+        go.countDown();
+        long total = 0;
+        try {
+            Thread.sleep(RUN_MILLIS);
+            stop.set(true);
+            for (final Future<Long> result : results) {
+                total += result.get(10, TimeUnit.SECONDS);
+            }
+            writer.get(10, TimeUnit.SECONDS);
+        } finally {
+            stop.set(true);
+            pool.shutdownNow();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+            module.setChildren(children);
+        }
+        return total;
+    }
+
+}
@@ -1,8 +1,11 @@
 package org.erlide.engine.model.erlang;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import org.erlide.engine.model.root.IErlModule;
+import org.erlide.engine.services.parsing.ScannerService;
 import org.erlide.engine.util.ErlideTestUtils;
 import org.junit.Test;
 
@@ -21,4 +24,41 @@ public class IErlFunctionCommentTest extends ErlModelTestBase {
         final IErlFunction function = (IErlFunction) myModule.getChildNamed("f2");
         assertEquals(0, function.getComments().size());
     }
+
+    @Test
+    public void reparseKeepsCommentsOfKeptFunctions() throws Exception {
+        final String s = "%% doc of f\nf() ->\n    ok.\ng() ->\n    ok.\n";
+        final IErlModule myModule = ErlideTestUtils.createModule(project, "v.erl", s);
+        final ScannerService scanner = myModule.getScanner();
+        try {
+            myModule.open(null);
+            final IErlFunction f = (IErlFunction) myModule.getChildNamed("f");
+            // edit g's body
+            myModule.reconcileText(s.indexOf("ok.", s.indexOf("g()")), 2, "error", null);
+            myModule.postReconcile(null);
+            assertSame(f, myModule.getChildNamed("f"));
+            assertEquals(1, f.getComments().size());
+        } finally {
+            scanner.dispose();
+        }
+    }
+
+    @Test
+    public void changedCommentReplacesKeptFunction() throws Exception {
+        final String s = "%% doc of f\nf() ->\n    ok.\n";
+        final IErlModule myModule = ErlideTestUtils.createModule(project, "u.erl", s);
+        final ScannerService scanner = myModule.getScanner();
+        try {
+            myModule.open(null);
+            final IErlFunction f = (IErlFunction) myModule.getChildNamed("f");
+            myModule.reconcileText(s.indexOf("f\n"), 1, "F", null);
+            myModule.postReconcile(null);
+            final IErlFunction f2 = (IErlFunction) myModule.getChildNamed("f");
+            assertNotSame(f, f2);
+            assertEquals("%% doc of f", f.getComments().iterator().next().getName());
+            assertEquals("%% doc of F", f2.getComments().iterator().next().getName());
+        } finally {
+            scanner.dispose();
+        }
+    }
 }
@@ -160,6 +160,17 @@ public class IErlModelTest extends ErlModelTestBase {
         assertNull(findModule6);
     }
 
+    @Test
+    public void findModule_seesAddedAndDeletedModules() throws Exception {
+        assertNull(model.findModule("zz"));
+        final IErlModule module2 = ErlideTestUtils.createModule(project, "zz.erl",
+                "-module(zz).\n");
+        assertEquals(module2, model.findModule("zz"));
+        assertEquals(module2, model.findModule(null, module2.getFilePath()));
+        ErlideTestUtils.deleteModule(module2);
+        assertNull(model.findModule("zz"));
+    }
+
     // IErlModule findModule(String moduleName, String modulePath)
     // throws ErlModelException;
     @Test
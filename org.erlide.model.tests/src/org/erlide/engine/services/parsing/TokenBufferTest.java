@@ -0,0 +1,40 @@
+package org.erlide.engine.services.parsing;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Test;
+
+public class TokenBufferTest {
+
+    @Test
+    public void growsWhenAdding() {
+        final TokenBuffer tokens = new TokenBuffer(1);
+        for (int i = 0; i < 100; i++) {
+            tokens.add(ErlToken.KIND_ATOM, i / 10, i * 2, 1);
+        }
+        assertThat(tokens.size(), is(100));
+        assertThat(tokens.getOffset(99), is(198));
+        assertThat(tokens.getLine(99), is(9));
+    }
+
+    @Test
+    public void unpacksTheBackendFormat() {
+        final byte[] bytes = { ErlToken.KIND_VAR, 0, 0, 1, 0, 0, 0, 0, 0, 3, '(', 0, 0,
+                2, 1, 0, 0, 0, 0, 1 };
+        final TokenBuffer tokens = TokenBuffer.fromPacked(bytes, 100);
+        assertThat(tokens.size(), is(2));
+        assertThat(tokens.getKind(0), is(ErlToken.KIND_VAR));
+        assertThat(tokens.getOffset(0), is(100));
+        assertThat(tokens.getLength(0), is(3));
+        assertThat(tokens.getKind(1), is((int) '('));
+        assertThat(tokens.getLine(1), is(2));
+        assertThat(tokens.getOffset(1), is(65636));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void checksIndexes() {
+        new TokenBuffer(10).getKind(0);
+    }
+
+}
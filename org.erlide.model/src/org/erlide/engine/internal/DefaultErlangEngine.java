@@ -18,6 +18,7 @@ import org.erlide.engine.internal.services.cleanup.ErlTidyCleanupProvider;
 import org.erlide.engine.internal.services.codeassist.ErlangCompletionService;
 import org.erlide.engine.internal.services.codeassist.ErlideContextAssist;
 import org.erlide.engine.internal.services.edoc.ErlideEdocExport;
+import org.erlide.engine.internal.services.parsing.ErlLexer;
 import org.erlide.engine.internal.services.parsing.ErlParser;
 import org.erlide.engine.internal.services.parsing.ErlideParser;
 import org.erlide.engine.internal.services.parsing.ErlideScanner;
@@ -204,7 +205,7 @@ public class DefaultErlangEngine implements IErlangEngine, IExecutableExtension
     @Override
     public SimpleScannerService getSimpleScannerService() {
         if (backend == null) {
-            return new NullScannerService();
+            return ErlLexer.ENABLED ? new ErlLexer() : new NullScannerService();
         }
         return new ErlideScanner(backend);
     }
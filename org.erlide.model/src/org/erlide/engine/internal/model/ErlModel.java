@@ -45,6 +45,7 @@ import org.eclipse.xtext.xbase.lib.IterableExtensions;
 import org.erlide.engine.ErlangEngine;
 import org.erlide.engine.internal.ModelPlugin;
 import org.erlide.engine.internal.model.cache.ErlModelCache;
+import org.erlide.engine.internal.model.cache.ModuleIndex;
 import org.erlide.engine.internal.model.root.ErlElementDelta;
 import org.erlide.engine.internal.model.root.ErlFolder;
 import org.erlide.engine.internal.model.root.ErlModule;
@@ -60,6 +61,7 @@ import org.erlide.engine.model.IParent;
 import org.erlide.engine.model.erlang.ErlangFunction;
 import org.erlide.engine.model.erlang.FunctionRef;
 import org.erlide.engine.model.erlang.IErlFunction;
+import org.erlide.engine.model.erlang.SourceKind;
 import org.erlide.engine.model.root.ElementChangedEvent;
 import org.erlide.engine.model.root.IElementChangedListener;
 import org.erlide.engine.model.root.IErlElementDelta;
@@ -71,6 +73,7 @@ import org.erlide.engine.model.root.IErlModelChangeListener;
 import org.erlide.engine.model.root.IErlModule;
 import org.erlide.engine.model.root.IErlProject;
 import org.erlide.engine.model.root.IOpenable;
+import org.erlide.engine.model.root.ProjectConfigType;
 import org.erlide.engine.model.root.ProjectConfigurationChangeListener;
 import org.erlide.engine.util.CommonUtils;
 import org.erlide.engine.util.NatureUtil;
@@ -818,14 +821,17 @@ public class ErlModel extends Openable implements IErlModel {
             private final List<IResource> added;
             private final List<IResource> changed;
             private final Map<IResource, IResourceDelta> changedDelta;
+            private final Set<IProject> reconfigured;
 
             private PostChangeVisitor(final List<IResource> removed,
                     final List<IResource> added, final List<IResource> changed,
-                    final Map<IResource, IResourceDelta> changedDelta) {
+                    final Map<IResource, IResourceDelta> changedDelta,
+                    final Set<IProject> reconfigured) {
                 this.removed = removed;
                 this.added = added;
                 this.changed = changed;
                 this.changedDelta = changedDelta;
+                this.reconfigured = reconfigured;
             }
 
             @Override
@@ -855,8 +861,38 @@ public class ErlModel extends Openable implements IErlModel {
                         removed.add(resource);
                     }
                 }
+                if (isConfiguration(delta)) {
+                    reconfigured.add(resource.getProject());
+                }
                 return !erlangFile;
             }
+
+            /**
+             * @return if the delta may change the project's configuration: its
+             *         description, settings or configuration file.
+             */
+            private boolean isConfiguration(final IResourceDelta delta) {
+                final IResource resource = delta.getResource();
+                if (resource.getType() == IResource.PROJECT) {
+                    return (delta.getFlags() & (IResourceDelta.OPEN
+                            | IResourceDelta.DESCRIPTION)) != 0;
+                }
+                if (resource.getType() != IResource.FILE) {
+                    return false;
+                }
+                final IPath path = resource.getProjectRelativePath();
+                if (path.segmentCount() == 2 && ".settings".equals(path.segment(0))) {
+                    return true;
+                }
+                if (path.segmentCount() == 1) {
+                    for (final ProjectConfigType type : ProjectConfigType.values()) {
+                        if (type.getConfigName().equals(path.segment(0))) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
         }
 
         @Override
@@ -866,10 +902,12 @@ public class ErlModel extends Openable implements IErlModel {
             final List<IResource> changed = Lists.newArrayList();
             final List<IResource> removed = Lists.newArrayList();
             final Map<IResource, IResourceDelta> changedDelta = Maps.newHashMap();
+            final Set<IProject> reconfigured = Sets.newHashSet();
             final IResourceDeltaVisitor visitor;
             switch (event.getType()) {
             case IResourceChangeEvent.POST_CHANGE:
-                visitor = new PostChangeVisitor(removed, added, changed, changedDelta);
+                visitor = new PostChangeVisitor(removed, added, changed, changedDelta,
+                        reconfigured);
                 break;
             case IResourceChangeEvent.PRE_CLOSE:
                 visitor = new PreCloseVisitor(removed);
@@ -895,6 +933,8 @@ public class ErlModel extends Openable implements IErlModel {
                 prjs.add(rsrc.getProject());
                 create(rsrc);
             }
+            updateModuleIndex(added, true);
+            updateModuleIndex(removed, false);
             for (final IResource rsrc : changed) {
                 prjs.add(rsrc.getProject());
                 change(rsrc, changedDelta.get(rsrc));
@@ -919,14 +959,54 @@ public class ErlModel extends Openable implements IErlModel {
             }
 
             for (final IProject prj : prjs) {
-                notifyProject(prj);
+                notifyProject(prj, reconfigured.contains(prj));
+            }
+        }
+
+        private void updateModuleIndex(final List<IResource> resources,
+                final boolean add) {
+            final ModuleIndex index = ErlModelCache.getDefault().getModuleIndex();
+            for (final IResource rsrc : resources) {
+                final IProject prj = rsrc.getProject();
+                if (prj == null) {
+                    continue;
+                }
+                if (rsrc.getType() == IResource.PROJECT) {
+                    index.invalidate(prj.getName());
+                } else if (rsrc.getType() != IResource.FILE) {
+                    index.invalidateModules(prj.getName());
+                } else if (SourceKind.nameToModuleKind(rsrc.getName())
+                        != SourceKind.HRL) {
+                    // headers aren't indexed
+                    final IErlElement element = findElement(rsrc);
+                    if (element instanceof IErlModule && isInSourceDir(rsrc)) {
+                        if (add) {
+                            index.addModule(prj.getName(), (IErlModule) element);
+                        } else {
+                            index.removeModule(prj.getName(), (IErlModule) element);
+                        }
+                    } else {
+                        index.invalidateModules(prj.getName());
+                    }
+                }
             }
         }
 
-        private void notifyProject(final IProject prj0) {
+        private boolean isInSourceDir(final IResource rsrc) {
+            final IErlProject project = findProject(rsrc.getProject());
+            return project != null
+                    && project.getProperties().getSourceDirs()
+                            .contains(rsrc.getParent().getProjectRelativePath());
+        }
+
+        private void notifyProject(final IProject prj0, final boolean reconfigured) {
             if (!prj0.exists()) {
                 return;
             }
+            if (reconfigured) {
+                // the externals may be different too
+                ErlModelCache.getDefault().getModuleIndex().invalidate(prj0.getName());
+            }
             final IErlProject prj = findProject(prj0);
             if (prj instanceof ProjectConfigurationChangeListener) {
                 ((ProjectConfigurationChangeListener) prj).configurationChanged();
@@ -1050,59 +1130,47 @@ public class ErlModel extends Openable implements IErlModel {
                 return module;
             }
         }
-        final List<IErlModule> allModules = Lists.newArrayList();
-        final Set<String> paths = Sets.newHashSet();
-        try {
-            for (int i = 0; i < 2; ++i) {
-                final boolean externalModules = i > 0;
-                if (externalModules && !checkExternals) {
-                    break;
-                }
-                if (project != null) {
-                    final IErlModule module = tryFindModule(Sets.newHashSet(project),
-                            moduleName, modulePath, allModules, paths, externalModules);
-                    if (module != null) {
-                        return module;
-                    }
+        for (int i = 0; i < 2; ++i) {
+            final boolean externalModules = i > 0;
+            if (externalModules && !checkExternals) {
+                break;
+            }
+            if (project != null) {
+                final IErlModule module = tryFindModule(Sets.newHashSet(project),
+                        moduleName, modulePath, externalModules);
+                if (module != null) {
+                    return module;
                 }
-                if ((scope == Scope.REFERENCED_PROJECTS || scope == Scope.ALL_PROJECTS)
-                        && project != null) {
-                    final Collection<IErlProject> projects = project
-                            .getReferencedProjects();
-                    final IErlModule module = tryFindModule(projects, moduleName,
-                            modulePath, allModules, paths, externalModules);
-                    if (module != null) {
-                        return module;
-                    }
+            }
+            if ((scope == Scope.REFERENCED_PROJECTS || scope == Scope.ALL_PROJECTS)
+                    && project != null) {
+                final Collection<IErlProject> projects = project.getReferencedProjects();
+                final IErlModule module = tryFindModule(projects, moduleName, modulePath,
+                        externalModules);
+                if (module != null) {
+                    return module;
                 }
+            }
 
-                if (scope == Scope.ALL_PROJECTS) {
-                    final Collection<IErlProject> projects = getErlangProjects();
-                    final IErlModule module = tryFindModule(projects, moduleName,
-                            modulePath, allModules, paths, externalModules);
-                    if (module != null) {
-                        return module;
-                    }
+            if (scope == Scope.ALL_PROJECTS) {
+                final Collection<IErlProject> projects = getErlangProjects();
+                final IErlModule module = tryFindModule(projects, moduleName, modulePath,
+                        externalModules);
+                if (module != null) {
+                    return module;
                 }
             }
-            return null;
-        } finally {
-            ErlModelCache.getDefault().putModules(allModules);
         }
+        return null;
     }
 
     private IErlModule tryFindModule(final Collection<IErlProject> projects,
             final String moduleName, final String modulePath,
-            final List<IErlModule> allModules, final Set<String> paths,
             final boolean externalModules) throws ErlModelException {
-        IErlModule module;
+        final ModuleIndex index = ErlModelCache.getDefault().getModuleIndex();
         for (final IErlProject project : projects) {
-            final Collection<IErlModule> modules = Lists.newArrayList();
-            final Collection<IErlModule> modulesOrExternals = externalModules
-                    ? project.getExternalModules() : project.getModules();
-            getAllModulesAux(modulesOrExternals, modules, paths);
-            allModules.addAll(modules);
-            module = findModule(modules, moduleName, modulePath);
+            final IErlModule module = index.find(project, externalModules, moduleName,
+                    modulePath);
             if (module != null) {
                 return module;
             }
@@ -1110,29 +1178,6 @@ public class ErlModel extends Openable implements IErlModel {
         return null;
     }
 
-    private IErlModule findModule(final Collection<IErlModule> modules,
-            final String moduleName, final String modulePath) {
-        if (modulePath != null) {
-            for (final IErlModule module : modules) {
-                final String path = module.getFilePath();
-                if (path != null && ResourceUtil.samePath(modulePath, path)) {
-                    return module;
-                }
-            }
-        }
-        if (moduleName != null) {
-            final boolean hasExtension = SystemConfiguration.hasExtension(moduleName);
-            for (final IErlModule module : modules) {
-                final String name = hasExtension ? module.getName()
-                        : module.getModuleName();
-                if (moduleName.equals(name)) {
-                    return module;
-                }
-            }
-        }
-        return null;
-    }
-
     @Override
     public IErlModule findIncludeFromModule(final IErlModule module,
             final String includeName, final String includePath,
@@ -1151,13 +1196,6 @@ public class ErlModel extends Openable implements IErlModel {
                 includeName, includePath, true, scope);
     }
 
-    private final Object fModelLock = new Object();
-
-    @Override
-    public Object getModelLock() {
-        return fModelLock;
-    }
-
     @Override
     public IErlElementDelta createElementDelta(final int kind, final int flags,
             final IErlElement element) {
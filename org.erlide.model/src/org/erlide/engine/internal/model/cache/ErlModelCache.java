@@ -39,6 +39,7 @@ public class ErlModelCache implements IDisposable {
     private final ModelChangeListener modelChangeListener;
     private final Cache<IErlProject, List<IErlModule>> projectModuleCache;
     private final Cache<IErlProject, List<IErlModule>> projectIncludeCache;
+    private final ModuleIndex moduleIndex;
 
     public static ErlModelCache getDefault() {
         if (fgInstance == null) {
@@ -75,6 +76,7 @@ public class ErlModelCache implements IDisposable {
         externalTreeCache = newCache();
         projectModuleCache = newCache();
         projectIncludeCache = newCache();
+        moduleIndex = new ModuleIndex();
 
         modelChangeListener = new ModelChangeListener();
         ErlangEngine.getInstance().getModel().addModelChangeListener(modelChangeListener);
@@ -217,8 +219,18 @@ public class ErlModelCache implements IDisposable {
         projectIncludeCache.put(project, Lists.newArrayList(includes));
     }
 
+    /**
+     * The name and path index of the modules in each project.
+     */
+    public ModuleIndex getModuleIndex() {
+        return moduleIndex;
+    }
+
     public void removeProject(final IErlProject project) {
         // ErlLogger.debug("removeForProject %s", project.getName());
+        if (project != null) {
+            moduleIndex.invalidate(project.getName());
+        }
         final List<IErlModule> includes = projectIncludeCache.getIfPresent(project);
         if (includes != null) {
             for (final IErlModule module : includes) {
@@ -248,6 +260,7 @@ public class ErlModelCache implements IDisposable {
 
     public void pathVarsChanged() {
         // FIXME we need to clear some stuff here...
+        moduleIndex.invalidateExternals();
     }
 
     public void newProjectCreated() {
@@ -269,9 +282,16 @@ public class ErlModelCache implements IDisposable {
         // nameToModuleCache.clear();
         projectModuleCache.invalidateAll();
         projectIncludeCache.invalidateAll();
+        moduleIndex.clear();
     }
 
     private static class DisabledErlModelCache extends ErlModelCache {
+        @Override
+        public ModuleIndex getModuleIndex() {
+            // nothing is kept, every lookup builds its own tables
+            return new ModuleIndex();
+        }
+
         @Override
         public void putEdited(final String path, final IErlModule module) {
         }
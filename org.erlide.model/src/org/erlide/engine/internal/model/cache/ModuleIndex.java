@@ -0,0 +1,221 @@
+package org.erlide.engine.internal.model.cache;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.filesystem.EFS;
+import org.erlide.engine.model.ErlModelException;
+import org.erlide.engine.model.root.IErlModule;
+import org.erlide.engine.model.root.IErlProject;
+import org.erlide.util.SystemConfiguration;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Per project lookup tables for the modules (or the external modules) of a
+ * project, by file path, module name and file name.
+ *
+ * <p>
+ * The tables of a project are built from {@link IErlProject#getModules()} or
+ * {@link IErlProject#getExternalModules()} the first time they are needed and
+ * are kept until the project's configuration changes. Modules added to or
+ * removed from the source directories are added to or removed from the tables.
+ * When several modules have the same key, the first one in the project's list
+ * wins, as with a linear search, and changes to such keys rebuild the tables.
+ * </p>
+ */
+public class ModuleIndex {
+
+    private static final boolean caseSensitive = EFS.getLocalFileSystem()
+            .isCaseSensitive();
+
+    // immutable, replaced as a whole when a module is added or removed
+    private static final class Entry {
+        private final Map<String, IErlModule> byPath;
+        private final Map<String, IErlModule> byModuleName;
+        private final Map<String, IErlModule> byName;
+        // if some key is shared by several modules, only the first is kept
+        private final boolean shadows;
+
+        Entry(final Collection<IErlModule> modules) {
+            byPath = Maps.newHashMap();
+            byModuleName = Maps.newHashMap();
+            byName = Maps.newHashMap();
+            boolean shadowed = false;
+            for (final IErlModule module : modules) {
+                shadowed |= !add(module);
+            }
+            shadows = shadowed;
+        }
+
+        private Entry(final Entry entry) {
+            byPath = Maps.newHashMap(entry.byPath);
+            byModuleName = Maps.newHashMap(entry.byModuleName);
+            byName = Maps.newHashMap(entry.byName);
+            shadows = entry.shadows;
+        }
+
+        /**
+         * @return false if a key was already taken by another module
+         */
+        private boolean add(final IErlModule module) {
+            final String path = module.getFilePath();
+            boolean added = true;
+            if (path != null) {
+                added &= putFirst(byPath, pathKey(path), module);
+            }
+            added &= putFirst(byModuleName, module.getModuleName(), module);
+            added &= putFirst(byName, module.getName(), module);
+            return added;
+        }
+
+        /**
+         * @return the entry with the module added, or null if the project's
+         *         order decides which module a key finds
+         */
+        Entry with(final IErlModule module) {
+            final Entry result = new Entry(this);
+            return result.add(module) ? result : null;
+        }
+
+        /**
+         * @return the entry without the module, or null if another module may
+         *         now take its keys
+         */
+        Entry without(final IErlModule module) {
+            if (shadows) {
+                return null;
+            }
+            final Entry result = new Entry(this);
+            result.byPath.values().remove(module);
+            result.byModuleName.values().remove(module);
+            result.byName.values().remove(module);
+            return result;
+        }
+
+        IErlModule find(final String moduleName, final String modulePath) {
+            if (modulePath != null) {
+                final IErlModule module = byPath.get(pathKey(modulePath));
+                if (module != null) {
+                    return module;
+                }
+            }
+            if (moduleName != null) {
+                if (SystemConfiguration.hasExtension(moduleName)) {
+                    return byName.get(moduleName);
+                }
+                return byModuleName.get(moduleName);
+            }
+            return null;
+        }
+
+        private static boolean putFirst(final Map<String, IErlModule> map,
+                final String key, final IErlModule module) {
+            if (map.containsKey(key)) {
+                return false;
+            }
+            map.put(key, module);
+            return true;
+        }
+    }
+
+    private final Map<String, Entry> modules = new ConcurrentHashMap<>();
+    private final Map<String, Entry> externalModules = new ConcurrentHashMap<>();
+    // bumped by every change, under the lock, so that tables built from stale
+    // data aren't stored
+    private long generation;
+
+    /**
+     * Find a module of the project by path (preferred) or by name. Names with
+     * an extension are compared to file names, others to module names.
+     */
+    public IErlModule find(final IErlProject project, final boolean externals,
+            final String moduleName, final String modulePath) throws ErlModelException {
+        final Map<String, Entry> map = externals ? externalModules : modules;
+        final String key = project.getName();
+        Entry entry = map.get(key);
+        if (entry == null) {
+            final long gen;
+            synchronized (this) {
+                gen = generation;
+            }
+            // built without the lock, getting the modules may take a while
+            entry = new Entry(
+                    externals ? project.getExternalModules() : project.getModules());
+            synchronized (this) {
+                if (gen == generation) {
+                    map.put(key, entry);
+                }
+            }
+        }
+        return entry.find(moduleName, modulePath);
+    }
+
+    /**
+     * A module was added to the project's source directories.
+     */
+    public synchronized void addModule(final String projectName,
+            final IErlModule module) {
+        generation++;
+        final Entry entry = modules.get(projectName);
+        if (entry != null) {
+            replace(projectName, entry.with(module));
+        }
+    }
+
+    /**
+     * A module was removed from the project's source directories.
+     */
+    public synchronized void removeModule(final String projectName,
+            final IErlModule module) {
+        generation++;
+        final Entry entry = modules.get(projectName);
+        if (entry != null) {
+            replace(projectName, entry.without(module));
+        }
+    }
+
+    private void replace(final String projectName, final Entry entry) {
+        if (entry == null) {
+            modules.remove(projectName);
+        } else {
+            modules.put(projectName, entry);
+        }
+    }
+
+    /**
+     * The project's modules were added, removed or moved.
+     */
+    public synchronized void invalidateModules(final String projectName) {
+        generation++;
+        modules.remove(projectName);
+    }
+
+    /**
+     * The project's configuration changed, its externals may be different too.
+     */
+    public synchronized void invalidate(final String projectName) {
+        generation++;
+        modules.remove(projectName);
+        externalModules.remove(projectName);
+    }
+
+    public synchronized void invalidateExternals() {
+        generation++;
+        externalModules.clear();
+    }
+
+    public synchronized void clear() {
+        generation++;
+        modules.clear();
+        externalModules.clear();
+    }
+
+    private static String pathKey(final String path) {
+        // same equality as ResourceUtil.samePath
+        return caseSensitive ? path : path.toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -60,11 +60,9 @@ public class ErlFunction extends ErlMember implements IErlFunction {
     @Override
     public List<IErlFunctionClause> getClauses() {
         final ArrayList<IErlFunctionClause> fc = new ArrayList<>();
-        synchronized (getModelLock()) {
-            for (final IErlElement el : internalGetChildren()) {
-                if (el instanceof IErlFunctionClause) {
-                    fc.add((IErlFunctionClause) el);
-                }
+        for (final IErlElement el : internalGetChildren()) {
+            if (el instanceof IErlFunctionClause) {
+                fc.add((IErlFunctionClause) el);
             }
         }
         return fc;
@@ -174,7 +172,7 @@ public class ErlFunction extends ErlMember implements IErlFunction {
 
     @Override
     public void setTypespec(final IErlTypespec spec) {
-        if (isValidSpec(spec)) {
+        if (spec == null || isValidSpec(spec)) {
             typespec = spec;
         }
     }
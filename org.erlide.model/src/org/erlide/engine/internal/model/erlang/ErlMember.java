@@ -8,6 +8,8 @@ import org.erlide.engine.model.erlang.IErlMember;
 import org.erlide.engine.model.erlang.ISourceRange;
 import org.erlide.engine.model.root.IErlModule;
 
+import com.ericsson.otp.erlang.OtpErlangObject;
+
 /**
  *
  * @author Vlad Dumitrescu
@@ -15,6 +17,9 @@ import org.erlide.engine.model.root.IErlModule;
 public abstract class ErlMember extends SourceRefElement implements IErlMember {
 
     int fNameRangeOffset, fNameRangeLength;
+    // the form or comment token this was created from, to compare with the
+    // next parse
+    private OtpErlangObject form;
 
     protected ErlMember(final IParent parent, final String name) {
         super(parent, name);
@@ -26,6 +31,14 @@ public abstract class ErlMember extends SourceRefElement implements IErlMember {
         fNameRangeLength = length;
     }
 
+    public OtpErlangObject getForm() {
+        return form;
+    }
+
+    public void setForm(final OtpErlangObject form) {
+        this.form = form;
+    }
+
     @Override
     public ISourceRange getNameRange() {
         if (fNameRangeOffset == 0 && fNameRangeLength == 0) {
@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -31,6 +32,7 @@ import org.erlide.engine.model.ErlElementKind;
 import org.erlide.engine.model.ErlModelException;
 import org.erlide.engine.model.IErlElement;
 import org.erlide.engine.model.IParent;
+import org.erlide.engine.model.builder.IncludeGraph;
 import org.erlide.engine.model.erlang.ErlangFunction;
 import org.erlide.engine.model.erlang.ErlangIncludeFile;
 import org.erlide.engine.model.erlang.IErlAttribute;
@@ -44,6 +46,7 @@ import org.erlide.engine.model.erlang.IErlTypespec;
 import org.erlide.engine.model.erlang.ISourceRange;
 import org.erlide.engine.model.erlang.ISourceReference;
 import org.erlide.engine.model.erlang.SourceKind;
+import org.erlide.engine.model.root.IErlElementDelta;
 import org.erlide.engine.model.root.IErlFolder;
 import org.erlide.engine.model.root.IErlModel;
 import org.erlide.engine.model.root.IErlModule;
@@ -72,7 +75,9 @@ public class ErlModule extends Openable implements IErlModule {
     private String initialText;
     private boolean parsed;
     private final String scannerName;
-    private final Collection<IErlComment> comments;
+    // immutable snapshot, replaced as a whole
+    private volatile Collection<IErlComment> comments;
+    private volatile IErlElementDelta parseDelta;
     private ScannerService scanner;
     private final String encoding;
 
@@ -98,7 +103,7 @@ public class ErlModule extends Openable implements IErlModule {
         moduleKind = SourceKind.nameToModuleKind(name);
         parsed = false;
         scannerName = createScannerName();
-        comments = Lists.newArrayList();
+        comments = Collections.emptyList();
         if (ModelConfig.verbose) {
             // final IErlElement element = (IErlElement) parent;
             // final String parentName = element.getName();
@@ -108,13 +113,21 @@ public class ErlModule extends Openable implements IErlModule {
     }
 
     public boolean internalBuildStructure(final IProgressMonitor pm) {
-        setChildren(null);
         final String text = getInitialText();
         if (text != null) {
+            // the parser replaces the children, keeping those that didn't change
             final ParserService parser = ErlangEngine.getInstance().getParserService();
-            parsed = parser.parse(this, scannerName, !parsed, getFilePath(), text, true);
+            // the backend's scanner may not know the module if it came from the
+            // parse cache; without a scanner of our own, the text hasn't changed
+            if (scanner != null) {
+                scanner.flush();
+            }
+            parsed = parser.parse(this, scannerName, !parsed || scanner == null,
+                    getFilePath(), text, true);
             return parsed;
         }
+        setChildren(null);
+        parseDelta = null;
         return true;
     }
 
@@ -244,19 +257,27 @@ public class ErlModule extends Openable implements IErlModule {
 
     @Override
     public void setComments(final Collection<? extends IErlComment> comments) {
-        synchronized (getModelLock()) {
-            this.comments.clear();
-            if (comments != null) {
-                this.comments.addAll(comments);
-            }
+        if (comments == null || comments.isEmpty()) {
+            this.comments = Collections.emptyList();
+        } else {
+            this.comments = Collections
+                    .unmodifiableList(Lists.<IErlComment> newArrayList(comments));
         }
     }
 
     @Override
     public Collection<IErlComment> getComments() {
-        synchronized (getModelLock()) {
-            return Collections.unmodifiableCollection(comments);
-        }
+        return comments;
+    }
+
+    @Override
+    public IErlElementDelta getParseDelta() {
+        return parseDelta;
+    }
+
+    @Override
+    public void setParseDelta(final IErlElementDelta delta) {
+        parseDelta = delta;
     }
 
     @Override
@@ -326,13 +347,11 @@ public class ErlModule extends Openable implements IErlModule {
     @Override
     public IErlPreprocessorDef findPreprocessorDef(final String definedName,
             final ErlElementKind kind) {
-        synchronized (getModelLock()) {
-            for (final IErlElement m : internalGetChildren()) {
-                if (m instanceof IErlPreprocessorDef) {
-                    final IErlPreprocessorDef pd = (IErlPreprocessorDef) m;
-                    if (pd.getKind() == kind && pd.getDefinedName().equals(definedName)) {
-                        return pd;
-                    }
+        for (final IErlElement m : internalGetChildren()) {
+            if (m instanceof IErlPreprocessorDef) {
+                final IErlPreprocessorDef pd = (IErlPreprocessorDef) m;
+                if (pd.getKind() == kind && pd.getDefinedName().equals(definedName)) {
+                    return pd;
                 }
             }
         }
@@ -345,18 +364,16 @@ public class ErlModule extends Openable implements IErlModule {
             open(null);
         }
         final List<ErlangIncludeFile> r = Lists.newArrayList();
-        synchronized (getModelLock()) {
-            for (final IErlElement m : internalGetChildren()) {
-                if (m instanceof IErlAttribute) {
-                    final IErlAttribute a = (IErlAttribute) m;
-                    final OtpErlangObject v = a.getValue();
-                    if (v instanceof OtpErlangString) {
-                        final String s = ((OtpErlangString) v).stringValue();
-                        if ("include".equals(a.getName())) {
-                            r.add(new ErlangIncludeFile(false, s));
-                        } else if ("include_lib".equals(a.getName())) {
-                            r.add(new ErlangIncludeFile(true, s));
-                        }
+        for (final IErlElement m : internalGetChildren()) {
+            if (m instanceof IErlAttribute) {
+                final IErlAttribute a = (IErlAttribute) m;
+                final OtpErlangObject v = a.getValue();
+                if (v instanceof OtpErlangString) {
+                    final String s = ((OtpErlangString) v).stringValue();
+                    if ("include".equals(a.getName())) {
+                        r.add(new ErlangIncludeFile(false, s));
+                    } else if ("include_lib".equals(a.getName())) {
+                        r.add(new ErlangIncludeFile(true, s));
                     }
                 }
             }
@@ -367,12 +384,10 @@ public class ErlModule extends Openable implements IErlModule {
     @Override
     public Collection<IErlImport> getImports() {
         final List<IErlImport> result = new ArrayList<>();
-        synchronized (getModelLock()) {
-            for (final IErlElement e : internalGetChildren()) {
-                if (e instanceof IErlImport) {
-                    final IErlImport ei = (IErlImport) e;
-                    result.add(ei);
-                }
+        for (final IErlElement e : internalGetChildren()) {
+            if (e instanceof IErlImport) {
+                final IErlImport ei = (IErlImport) e;
+                result.add(ei);
             }
         }
         return result;
@@ -437,6 +452,9 @@ public class ErlModule extends Openable implements IErlModule {
     public Set<ISourceUnit> getDirectDependentModules() throws ErlModelException {
         final Set<ISourceUnit> result = new HashSet<>();
         final IErlProject project = modelUtilService.getProject(this);
+        if (findDependentsInGraph(project, false, result)) {
+            return result;
+        }
         for (final IErlModule module : project.getModules()) {
             final boolean wasOpen = module.isOpen();
             if (!wasOpen) {
@@ -460,6 +478,9 @@ public class ErlModule extends Openable implements IErlModule {
     public Set<ISourceUnit> getAllDependentModules() throws CoreException {
         final Set<ISourceUnit> result = new HashSet<>();
         final IErlProject project = modelUtilService.getProject(this);
+        if (findDependentsInGraph(project, true, result)) {
+            return result;
+        }
         for (final IErlModule module : project.getModules()) {
             final Collection<IErlModule> allIncludedFiles = ErlangEngine.getInstance()
                     .getModelSearcherService().findAllIncludedFiles(module);
@@ -470,6 +491,33 @@ public class ErlModule extends Openable implements IErlModule {
         return result;
     }
 
+    /**
+     * Use the builder's include graph, if it knows the whole project. As when
+     * searching the project, only its modules are returned, not the headers
+     * or the files outside the source directories.
+     */
+    private boolean findDependentsInGraph(final IErlProject project,
+            final boolean transitive, final Set<ISourceUnit> result)
+            throws ErlModelException {
+        final IProject workspaceProject = project.getWorkspaceProject();
+        if (workspaceProject == null) {
+            return false;
+        }
+        final IncludeGraph graph = IncludeGraph.get(workspaceProject);
+        if (!graph.isComplete()) {
+            return false;
+        }
+        final IErlModel model = ErlangEngine.getInstance().getModel();
+        final Set<IErlModule> modules = new HashSet<>(project.getModules());
+        for (final IPath path : graph.getDependents(getName(), transitive)) {
+            final IErlModule module = model.findModule(workspaceProject.getFile(path));
+            if (module != null && modules.contains(module)) {
+                result.add(module);
+            }
+        }
+        return true;
+    }
+
     @Override
     public synchronized void resetAndCacheScannerAndParser(final String newText)
             throws ErlModelException {
@@ -516,13 +564,11 @@ public class ErlModule extends Openable implements IErlModule {
     public Collection<IErlPreprocessorDef> getPreprocessorDefs(
             final ErlElementKind kind) {
         final List<IErlPreprocessorDef> result = Lists.newArrayList();
-        synchronized (getModelLock()) {
-            for (final IErlElement e : internalGetChildren()) {
-                if (e instanceof IErlPreprocessorDef) {
-                    final IErlPreprocessorDef pd = (IErlPreprocessorDef) e;
-                    if (pd.getKind() == kind || kind == ErlElementKind.PROBLEM) {
-                        result.add(pd);
-                    }
+        for (final IErlElement e : internalGetChildren()) {
+            if (e instanceof IErlPreprocessorDef) {
+                final IErlPreprocessorDef pd = (IErlPreprocessorDef) e;
+                if (pd.getKind() == kind || kind == ErlElementKind.PROBLEM) {
+                    result.add(pd);
                 }
             }
         }
@@ -615,4 +661,15 @@ public class ErlModule extends Openable implements IErlModule {
         return scannerName;
     }
 
+    @Override
+    public void flushScanner() {
+        final ScannerService theScanner;
+        synchronized (this) {
+            theScanner = scanner;
+        }
+        if (theScanner != null) {
+            theScanner.flush();
+        }
+    }
+
 }
@@ -218,7 +218,7 @@ public abstract class Openable extends ErlElement implements IOpenable {
                 }
             }
         }
-        internalGetChildren().clear();
+        clearChildren();
         setStructureKnown(false);
     }
 }
@@ -53,6 +53,8 @@ public class ErlangCompletionService implements CompletionService {
     private final String elementBefore;
 
     private static final List<CompletionData> EMPTY_COMPLETIONS = new ArrayList<>();
+    private static final CompletionFlag[] MODULE_KINDS = { CompletionFlag.MODULES,
+            CompletionFlag.INCLUDES, CompletionFlag.INCLUDE_LIBS };
 
     public ErlangCompletionService(final IErlProject project, final IErlModule module,
             final String elementBefore) {
@@ -177,10 +179,8 @@ public class ErlangCompletionService implements CompletionService {
         return result;
     }
 
-    protected List<CompletionData> getModules(final IOtpRpc backend, final int offset,
-            final String prefix, final CompletionFlag kind, final boolean inString)
-            throws ErlModelException {
-        final List<String> mods = getModules0(backend, offset, prefix, kind);
+    protected List<CompletionData> getModules(final int offset, final String prefix,
+            final List<String> mods, final CompletionFlag kind, final boolean inString) {
         final boolean includes = kind == CompletionFlag.INCLUDES
                 || kind == CompletionFlag.INCLUDE_LIBS;
         final List<CompletionData> result = Lists.newArrayList();
@@ -208,25 +208,37 @@ public class ErlangCompletionService implements CompletionService {
         return string;
     }
 
-    List<String> getModules0(final IOtpRpc backend, final int offset, final String prefix,
-            final CompletionFlag kind) throws ErlModelException {
-        final List<String> result = Lists.newArrayList();
-        final boolean includes = kind == CompletionFlag.INCLUDES
-                || kind == CompletionFlag.INCLUDE_LIBS;
-        final List<String> names = ErlangEngine.getInstance().getModelUtilService()
-                .findUnitsWithPrefix(prefix, project, kind != CompletionFlag.INCLUDES,
-                        includes);
-        final OtpErlangObject res = ErlangEngine.getInstance()
+    /**
+     * The module or include names for each of the kinds, asked for in one
+     * round-trip.
+     */
+    List<List<String>> getModules0(final IOtpRpc backend, final String prefix,
+            final List<CompletionFlag> kinds) throws ErlModelException {
+        final List<List<String>> names = Lists.newArrayList();
+        final List<Boolean> includes = Lists.newArrayList();
+        for (final CompletionFlag kind : kinds) {
+            final boolean include = kind == CompletionFlag.INCLUDES
+                    || kind == CompletionFlag.INCLUDE_LIBS;
+            names.add(ErlangEngine.getInstance().getModelUtilService()
+                    .findUnitsWithPrefix(prefix, project, kind != CompletionFlag.INCLUDES,
+                            include));
+            includes.add(include);
+        }
+        final List<OtpErlangObject> res = ErlangEngine.getInstance()
                 .getService(OtpDocService.class)
                 .getModules(backend, prefix, names, includes);
-        if (res instanceof OtpErlangList) {
-            final OtpErlangList resList = (OtpErlangList) res;
-            for (final OtpErlangObject o : resList) {
-                if (o instanceof OtpErlangString) {
-                    final OtpErlangString s = (OtpErlangString) o;
-                    result.add(s.stringValue());
+        final List<List<String>> result = Lists.newArrayList();
+        for (final OtpErlangObject r : res) {
+            final List<String> mods = Lists.newArrayList();
+            if (r instanceof OtpErlangList) {
+                for (final OtpErlangObject o : (OtpErlangList) r) {
+                    if (o instanceof OtpErlangString) {
+                        final OtpErlangString s = (OtpErlangString) o;
+                        mods.add(s.stringValue());
+                    }
                 }
             }
+            result.add(mods);
         }
         return result;
     }
@@ -381,17 +393,18 @@ public class ErlangCompletionService implements CompletionService {
         if (flags.contains(CompletionFlag.AUTO_IMPORTED_FUNCTIONS)) {
             addSorted(prefix, result, getAutoImportedFunctions(backend, offset, prefix));
         }
-        if (flags.contains(CompletionFlag.MODULES)) {
-            addSorted(prefix, result, getModules(backend, offset, prefix,
-                    CompletionFlag.MODULES, inString));
-        }
-        if (flags.contains(CompletionFlag.INCLUDES)) {
-            addSorted(prefix, result, getModules(backend, offset, prefix,
-                    CompletionFlag.INCLUDES, inString));
+        final List<CompletionFlag> moduleKinds = Lists.newArrayList();
+        for (final CompletionFlag kind : MODULE_KINDS) {
+            if (flags.contains(kind)) {
+                moduleKinds.add(kind);
+            }
         }
-        if (flags.contains(CompletionFlag.INCLUDE_LIBS)) {
-            addSorted(prefix, result, getModules(backend, offset, prefix,
-                    CompletionFlag.INCLUDE_LIBS, inString));
+        if (!moduleKinds.isEmpty()) {
+            final List<List<String>> mods = getModules0(backend, prefix, moduleKinds);
+            for (int i = 0; i < moduleKinds.size(); i++) {
+                addSorted(prefix, result, getModules(offset, prefix, mods.get(i),
+                        moduleKinds.get(i), inString));
+            }
         }
         if (flags.contains(CompletionFlag.RECORD_DEFS)) {
             addSorted(prefix, result, getMacroOrRecordCompletions(offset, prefix,
@@ -0,0 +1,89 @@
+package org.erlide.engine.internal.services.parsing;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Text changes that weren't sent to the backend's scanner yet. A change that
+ * touches or overlaps the text of the previous one is merged into it, so
+ * typing, deleting or pasting at one place adds up to a single change.
+ */
+final class EditBatch {
+
+    static final class Edit {
+        final int offset;
+        final int removeLength;
+        final String text;
+
+        Edit(final int offset, final int removeLength, final String text) {
+            this.offset = offset;
+            this.removeLength = removeLength;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return offset + "-" + removeLength + ":\"" + text + "\"";
+        }
+    }
+
+    private final List<Edit> edits = Lists.newArrayList();
+
+    /**
+     * @param offset
+     *            in the text with all previous changes applied
+     */
+    void add(final int offset, final int removeLength, final String text) {
+        if (!edits.isEmpty()) {
+            final Edit last = edits.get(edits.size() - 1);
+            final int lastEnd = last.offset + last.text.length();
+            if (offset <= lastEnd && offset + removeLength >= last.offset) {
+                edits.set(edits.size() - 1, merge(last, offset, removeLength, text));
+                if (edits.get(edits.size() - 1).removeLength == 0
+                        && edits.get(edits.size() - 1).text.isEmpty()) {
+                    edits.remove(edits.size() - 1);
+                }
+                return;
+            }
+        }
+        if (removeLength != 0 || !text.isEmpty()) {
+            edits.add(new Edit(offset, removeLength, text));
+        }
+    }
+
+    /**
+     * @return the change that has the same effect as last followed by the new
+     *         one, which touches the text inserted by last
+     */
+    private static Edit merge(final Edit last, final int offset, final int removeLength,
+            final String text) {
+        // removed text before, inside and after the text inserted by last
+        final int before = Math.max(0, last.offset - offset);
+        final int start = Math.max(0, offset - last.offset);
+        final int inside = Math.min(last.text.length() - start, removeLength - before);
+        final int after = removeLength - before - inside;
+        final String merged = last.text.substring(0, start) + text
+                + last.text.substring(start + inside);
+        return new Edit(Math.min(offset, last.offset), last.removeLength + before
+                + after, merged);
+    }
+
+    boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    /**
+     * @return the pending changes, in order; the batch is empty afterwards
+     */
+    List<Edit> drain() {
+        final List<Edit> result = Lists.newArrayList(edits);
+        edits.clear();
+        return result;
+    }
+
+    void clear() {
+        edits.clear();
+    }
+
+}
@@ -0,0 +1,301 @@
+package org.erlide.engine.internal.services.parsing;
+
+import java.util.Set;
+
+import org.erlide.engine.services.parsing.ErlToken;
+import org.erlide.engine.services.parsing.SimpleScannerService;
+import org.erlide.engine.services.parsing.TokenBuffer;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Scans Erlang text into the same tokens as erlide_scanner:light_scan_string,
+ * but in Java, so that highlighting doesn't wait for the backend (or stop when
+ * it is busy or gone).
+ *
+ * <p>
+ * Tokens have the kinds of {@link ErlToken}; other one character tokens have
+ * the character as kind, like the backend's. Nothing is kept between calls:
+ * the editor asks for whole lines of code partitions, and those never start
+ * inside a string, quoted atom or comment, so each scan can start from the
+ * initial state. Text that doesn't form a valid token is returned as a token of
+ * kind other instead of failing the scan. It can be turned off (and the
+ * backend used again) with <code>-Derlide.java.scanner=false</code>.
+ * </p>
+ */
+public final class ErlLexer implements SimpleScannerService {
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(
+            "erlide.java.scanner", "true"));
+
+    private static final Set<String> RESERVED = ImmutableSet.of("after", "and",
+            "andalso", "band", "begin", "bnot", "bor", "bsl", "bsr", "bxor", "case",
+            "catch", "cond", "div", "end", "fun", "if", "let", "not", "of", "or",
+            "orelse", "query", "receive", "rem", "try", "when", "xor");
+
+    // longest first
+    private static final String[] OPERATORS = { "=:=", "=/=", "...", "<<", ">>",
+            "==", "/=", "=<", ">=", "++", "--", "<-", "<=", "||", "::", "..", ":=",
+            "=>" };
+
+    @Override
+    public TokenBuffer lightScanString(final String string, final int offset) {
+        return scan(string, offset);
+    }
+
+    public static TokenBuffer scan(final CharSequence text, final int offset) {
+        final int n = text.length();
+        final TokenBuffer result = new TokenBuffer(n / 4 + 1);
+        int line = 1;
+        int i = 0;
+        while (i < n) {
+            final char c = text.charAt(i);
+            final int start = i;
+            final int kind;
+            if (c <= ' ' || c == '\u00a0') {
+                i = skipWhitespace(text, i);
+                kind = ErlToken.KIND_WHITESPACE;
+            } else if (c == '%') {
+                while (i < n && text.charAt(i) != '\n' && text.charAt(i) != '\r') {
+                    i++;
+                }
+                kind = ErlToken.KIND_COMMENT;
+            } else if (isVarStart(c)) {
+                i = skipName(text, i + 1);
+                kind = ErlToken.KIND_VAR;
+            } else if (isAtomStart(c)) {
+                i = skipName(text, i + 1);
+                kind = RESERVED.contains(text.subSequence(start, i).toString())
+                        ? ErlToken.KIND_KEYWORD : ErlToken.KIND_ATOM;
+            } else if (c == '\'') {
+                i = skipQuoted(text, i + 1, '\'');
+                kind = ErlToken.KIND_ATOM;
+            } else if (c == '"') {
+                i = skipQuoted(text, i + 1, '"');
+                kind = ErlToken.KIND_STRING;
+            } else if (c == '$') {
+                i = skipChar(text, i + 1);
+                kind = ErlToken.KIND_CHAR;
+            } else if (c >= '0' && c <= '9') {
+                final int end = skipNumber(text, i);
+                kind = end < 0 ? ErlToken.KIND_FLOAT : ErlToken.KIND_INTEGER;
+                i = Math.abs(end);
+            } else if (c == '?' && i + 1 < n && isMacroStart(text.charAt(i + 1))) {
+                final char d = text.charAt(i + 1);
+                i = d == '\'' ? skipQuoted(text, i + 2, '\'') : skipName(text, i + 2);
+                kind = ErlToken.KIND_MACRO;
+            } else if (c == '-' && i + 1 < n && text.charAt(i + 1) == '>') {
+                i += 2;
+                kind = ErlToken.KIND_ARROW;
+            } else {
+                final int len = operatorLength(text, i);
+                i += len;
+                kind = len == 1 && c < 128 ? c : ErlToken.KIND_OTHER;
+            }
+            result.add(kind, line, start + offset, i - start);
+            if (kind == ErlToken.KIND_WHITESPACE || kind == ErlToken.KIND_STRING
+                    || kind == ErlToken.KIND_ATOM || kind == ErlToken.KIND_CHAR) {
+                line += countLines(text, start, i);
+            }
+        }
+        return result;
+    }
+
+    private static int countLines(final CharSequence text, final int from,
+            final int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            final char c = text.charAt(i);
+            if (c == '\n' || c == '\r' && (i + 1 == to || text.charAt(i + 1) != '\n')) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private static int skipWhitespace(final CharSequence text, final int from) {
+        int i = from;
+        while (i < text.length()) {
+            final char c = text.charAt(i);
+            if (c > ' ' && c != '\u00a0') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    // names are Latin-1, like the Erlang scanner's
+    private static boolean isVarStart(final char c) {
+        return c >= 'A' && c <= 'Z' || c == '_' || c >= '\u00c0' && c <= '\u00de'
+                && c != '\u00d7';
+    }
+
+    private static boolean isAtomStart(final char c) {
+        return c >= 'a' && c <= 'z' || c >= '\u00df' && c <= '\u00ff' && c != '\u00f7';
+    }
+
+    private static boolean isMacroStart(final char c) {
+        return isVarStart(c) || isAtomStart(c) || c == '\'';
+    }
+
+    private static boolean isNameChar(final char c) {
+        return isVarStart(c) || isAtomStart(c) || c >= '0' && c <= '9' || c == '@';
+    }
+
+    private static int skipName(final CharSequence text, final int from) {
+        int i = from;
+        while (i < text.length() && isNameChar(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the end of a quoted atom or string, or of the text if it isn't
+     *         closed
+     */
+    private static int skipQuoted(final CharSequence text, final int from,
+            final char quote) {
+        int i = from;
+        while (i < text.length()) {
+            final char c = text.charAt(i);
+            if (c == quote) {
+                return i + 1;
+            }
+            i = c == '\\' ? skipEscape(text, i + 1) : i + 1;
+        }
+        return i;
+    }
+
+    private static int skipChar(final CharSequence text, final int from) {
+        if (from >= text.length()) {
+            return from;
+        }
+        return text.charAt(from) == '\\' ? skipEscape(text, from + 1) : from + 1;
+    }
+
+    /**
+     * @return the end of an escape sequence that starts after the backslash
+     */
+    private static int skipEscape(final CharSequence text, final int from) {
+        final int n = text.length();
+        if (from >= n) {
+            return from;
+        }
+        final char c = text.charAt(from);
+        if (c >= '0' && c <= '7') {
+            int i = from + 1;
+            while (i < n && i < from + 3 && text.charAt(i) >= '0'
+                    && text.charAt(i) <= '7') {
+                i++;
+            }
+            return i;
+        }
+        if (c == 'x' && from + 1 < n) {
+            if (text.charAt(from + 1) == '{') {
+                int i = from + 2;
+                while (i < n && isHexDigit(text.charAt(i))) {
+                    i++;
+                }
+                return i < n && text.charAt(i) == '}' ? i + 1 : i;
+            }
+            int i = from + 1;
+            while (i < n && i < from + 3 && isHexDigit(text.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+        if (c == '^' && from + 1 < n) {
+            return from + 2;
+        }
+        return from + 1;
+    }
+
+    private static boolean isHexDigit(final char c) {
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    /**
+     * @return the end of the number, negated if it is a float
+     */
+    private static int skipNumber(final CharSequence text, final int from) {
+        final int n = text.length();
+        int i = skipDigits(text, from, 10);
+        if (i < n && text.charAt(i) == '#') {
+            int base = 0;
+            for (int j = from; j < i; j++) {
+                final char c = text.charAt(j);
+                if (c != '_') {
+                    base = Math.min(base * 10 + c - '0', 37);
+                }
+            }
+            if (base >= 2 && base <= 36) {
+                final int end = skipDigits(text, i + 1, base);
+                return end > i + 1 ? end : i;
+            }
+            return i;
+        }
+        if (i + 1 < n && text.charAt(i) == '.' && isDigit(text.charAt(i + 1), 10)) {
+            i = skipDigits(text, i + 1, 10);
+            if (i < n && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+                int j = i + 1;
+                if (j < n && (text.charAt(j) == '+' || text.charAt(j) == '-')) {
+                    j++;
+                }
+                if (j < n && isDigit(text.charAt(j), 10)) {
+                    i = skipDigits(text, j, 10);
+                }
+            }
+            return -i;
+        }
+        return i;
+    }
+
+    // with single underscores between digits
+    private static int skipDigits(final CharSequence text, final int from,
+            final int base) {
+        final int n = text.length();
+        int i = from;
+        while (i < n) {
+            final char c = text.charAt(i);
+            if (isDigit(c, base)) {
+                i++;
+            } else if (c == '_' && i > from && i + 1 < n
+                    && isDigit(text.charAt(i + 1), base)) {
+                i += 2;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isDigit(final char c, final int base) {
+        final int d = Character.digit(c, base);
+        return d >= 0 && c < 128;
+    }
+
+    private static int operatorLength(final CharSequence text, final int from) {
+        for (final String op : OPERATORS) {
+            if (startsWith(text, from, op)) {
+                return op.length();
+            }
+        }
+        return 1;
+    }
+
+    private static boolean startsWith(final CharSequence text, final int from,
+            final String s) {
+        if (from + s.length() > text.length()) {
+            return false;
+        }
+        for (int j = 0; j < s.length(); j++) {
+            if (text.charAt(from + j) != s.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -14,8 +14,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.erlide.engine.ErlangEngine;
 import org.erlide.engine.internal.model.erlang.ErlAttribute;
@@ -30,6 +35,7 @@ import org.erlide.engine.internal.model.erlang.ErlRecordDef;
 import org.erlide.engine.internal.model.erlang.ErlRecordField;
 import org.erlide.engine.internal.model.erlang.ErlTypespec;
 import org.erlide.engine.internal.model.erlang.SourceRefElement;
+import org.erlide.engine.internal.model.root.ErlElementDelta;
 import org.erlide.engine.model.ErlModelException;
 import org.erlide.engine.model.IErlElement;
 import org.erlide.engine.model.erlang.IErlAttribute;
@@ -40,6 +46,7 @@ import org.erlide.engine.model.erlang.IErlMember;
 import org.erlide.engine.model.erlang.IErlRecordDef;
 import org.erlide.engine.model.erlang.IErlTypespec;
 import org.erlide.engine.model.erlang.ISourceReference;
+import org.erlide.engine.model.root.IErlElementDelta;
 import org.erlide.engine.model.root.IErlModule;
 import org.erlide.engine.services.parsing.ParserService;
 import org.erlide.engine.services.parsing.RuntimeHelper;
@@ -55,6 +62,7 @@ import com.ericsson.otp.erlang.OtpErlangRangeException;
 import com.ericsson.otp.erlang.OtpErlangString;
 import com.ericsson.otp.erlang.OtpErlangTuple;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * @author jakob
@@ -81,6 +89,10 @@ public final class ErlParser implements ParserService {
     private static final int MODULE_HEADER_COMMENT_THRESHOLD = 1;
     private static final boolean TRACE = false;
 
+    // for each backend, the cache key of the text whose references its search
+    // server got last, by module path
+    private static final Map<IOtpRpc, Map<String, String>> indexed = new WeakHashMap<>();
+
     private final RuntimeHelper helper;
     private final IOtpRpc backend;
 
@@ -101,33 +113,56 @@ public final class ErlParser implements ParserService {
         OtpErlangList comments = null;
         OtpErlangTuple res = null;
         if (initialParse) {
-            final String stateDir = ErlangEngine.getInstance().getStateDir();
             final String pathNotNull = path == null ? "" : path;
-            res = ErlideNoparse.initialParse(backend, scannerName, pathNotNull,
-                    initialText, stateDir, updateSearchServer);
+            final String stateDir = ErlangEngine.getInstance().getStateDir();
+            final OtpErlangTuple parsed = initialParse(ParseCache.getInstance(),
+                    scannerName, pathNotNull, initialText, stateDir, updateSearchServer);
+            if (parsed != null) {
+                forms = (OtpErlangList) parsed.elementAt(0);
+                comments = (OtpErlangList) parsed.elementAt(1);
+            }
         } else {
+            if (updateSearchServer) {
+                setIndexed(path == null ? "" : path, null);
+            }
             res = ErlideNoparse.reparse(backend, scannerName, updateSearchServer);
+            if (Util.isOk(res)) {
+                final OtpErlangTuple t = (OtpErlangTuple) res.elementAt(1);
+                forms = (OtpErlangList) t.elementAt(1);
+                comments = (OtpErlangList) t.elementAt(2);
+            } else {
+                ErlLogger.error("error when parsing %s: %s", path, res);
+            }
         }
-        if (Util.isOk(res)) {
-            final OtpErlangTuple t = (OtpErlangTuple) res.elementAt(1);
-            forms = (OtpErlangList) t.elementAt(1);
-            comments = (OtpErlangList) t.elementAt(2);
-        } else {
-            ErlLogger.error("error when parsing %s: %s", path, res);
+        final List<ErlElementDelta> changes = Lists.newArrayList();
+        final List<IErlElement> oldChildren = getChildren(module);
+        List<IErlElement> children = null;
+        if (forms != null) {
+            children = updateForms(module, oldChildren, forms, false, changes);
+        }
+        List<IErlComment> moduleComments = null;
+        if (comments != null) {
+            moduleComments = Lists.newArrayList();
+            for (final IErlElement c : updateForms(module, module.getComments(),
+                    comments, true, changes)) {
+                moduleComments.add((IErlComment) c);
+            }
         }
-        if (forms == null) {
-            module.setChildren(null);
-        } else {
-            final List<IErlElement> children = createForms(module, forms);
-            module.setChildren(children);
+        if (children != null) {
+            attachFunctionComments(module, children, oldChildren,
+                    moduleComments == null ? Collections.<IErlComment> emptyList()
+                            : moduleComments, changes);
         }
-        if (comments == null) {
-            module.setComments(null);
+        module.setChildren(children);
+        module.setComments(moduleComments);
+        if (forms == null || comments == null) {
+            module.setParseDelta(null);
         } else {
-            final List<IErlComment> moduleComments = createComments(module, comments);
-            module.setComments(moduleComments);
+            final int flags = changes.isEmpty() ? IErlElementDelta.F_FINE_GRAINED
+                    : IErlElementDelta.F_CHILDREN | IErlElementDelta.F_FINE_GRAINED;
+            module.setParseDelta(new ErlElementDelta(IErlElementDelta.CHANGED, flags,
+                    module, changes));
         }
-        attachFunctionComments(module);
         String cached = "reparsed";
         if (res != null && res.arity() > 2) {
             final OtpErlangObject res2 = res.elementAt(2);
@@ -144,29 +179,150 @@ public final class ErlParser implements ParserService {
         return forms != null && comments != null;
     }
 
-    private List<IErlComment> createComments(final IErlModule module,
-            final OtpErlangList comments) {
-        final List<IErlComment> moduleComments = Lists
-                .newArrayListWithCapacity(comments.arity());
-        for (final OtpErlangObject comment : comments) {
-            final IErlComment c = createComment(module, (OtpErlangTuple) comment);
-            if (c != null) {
-                moduleComments.add(c);
+    /**
+     * Parse the whole text, or take the forms and comments from the model cache
+     * if the text was parsed before. Only the backend parse sends the module's
+     * references to the search server, so when they are wanted the cache is
+     * read only if the search server already got them for this text.
+     *
+     * @return {Forms, Comments}, or null if the text couldn't be parsed
+     */
+    OtpErlangTuple initialParse(final ParseCache cache, final String scannerName,
+            final String path, final String initialText, final String stateDir,
+            final boolean updateSearchServer) {
+        final String cacheKey = cache.key(path, initialText);
+        if (cacheKey != null
+                && (!updateSearchServer || cacheKey.equals(getIndexed(path)))) {
+            final OtpErlangTuple cached = cache.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final OtpErlangTuple res = ErlideNoparse.initialParse(backend, scannerName,
+                path, initialText, stateDir, updateSearchServer);
+        if (!Util.isOk(res)) {
+            ErlLogger.error("error when parsing %s: %s", path, res);
+            return null;
+        }
+        final OtpErlangTuple t = (OtpErlangTuple) res.elementAt(1);
+        final OtpErlangList forms = (OtpErlangList) t.elementAt(1);
+        final OtpErlangList comments = (OtpErlangList) t.elementAt(2);
+        if (cacheKey != null) {
+            cache.put(cacheKey, forms, comments);
+        }
+        if (updateSearchServer) {
+            setIndexed(path, cacheKey);
+        }
+        return new OtpErlangTuple(new OtpErlangObject[] { forms, comments });
+    }
+
+    private String getIndexed(final String path) {
+        synchronized (indexed) {
+            final Map<String, String> keys = indexed.get(backend);
+            return keys == null ? null : keys.get(path);
+        }
+    }
+
+    private void setIndexed(final String path, final String key) {
+        synchronized (indexed) {
+            Map<String, String> keys = indexed.get(backend);
+            if (keys == null) {
+                keys = Maps.newHashMap();
+                indexed.put(backend, keys);
+            }
+            if (key == null) {
+                keys.remove(path);
+            } else {
+                keys.put(path, key);
+            }
+        }
+    }
+
+    private static List<IErlElement> getChildren(final IErlModule module) {
+        try {
+            return module.getChildren();
+        } catch (final ErlModelException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Create the elements of the new forms (or comments). Those of the previous
+     * parse are kept if their form didn't change. Forms that only moved because
+     * text before them changed get new elements too, as readers may still hold
+     * the old ones, but only the forms around the edited text are recorded in
+     * the delta.
+     */
+    private List<IErlElement> updateForms(final IErlModule module,
+            final Collection<? extends IErlElement> oldElements,
+            final OtpErlangList forms, final boolean comments,
+            final List<ErlElementDelta> changes) {
+        final List<IErlElement> old = Lists.newArrayList(oldElements);
+        final List<OtpErlangObject> oldForms = Lists.newArrayListWithCapacity(old
+                .size());
+        for (final IErlElement element : old) {
+            oldForms.add(element instanceof ErlMember ? ((ErlMember) element).getForm()
+                    : null);
+        }
+        final FormMatcher match = FormMatcher.match(oldForms, forms, comments);
+        final List<IErlElement> result = Lists.newArrayListWithCapacity(forms.arity());
+        result.addAll(old.subList(0, match.prefix));
+        final List<IErlElement> removed = Lists.newArrayList(old.subList(match.prefix,
+                old.size() - match.suffix));
+        for (int i = match.prefix; i < forms.arity() - match.suffix; i++) {
+            final OtpErlangTuple form = (OtpErlangTuple) forms.elementAt(i);
+            final IErlElement element = create(module, form, comments);
+            if (element == null) {
+                continue;
+            }
+            result.add(element);
+            final IErlElement previous = findSame(removed, element);
+            if (previous == null) {
+                changes.add(new ErlElementDelta(IErlElementDelta.ADDED, 0, element));
+            } else {
+                removed.remove(previous);
+                changes.add(new ErlElementDelta(IErlElementDelta.CHANGED,
+                        IErlElementDelta.F_CONTENT, element));
             }
         }
-        return moduleComments;
+        for (final IErlElement element : removed) {
+            changes.add(new ErlElementDelta(IErlElementDelta.REMOVED, 0, element));
+        }
+        final boolean moved = match.lines != 0 || match.offset != 0;
+        for (int i = 0; i < match.suffix; i++) {
+            if (!moved) {
+                result.add(old.get(old.size() - match.suffix + i));
+                continue;
+            }
+            final OtpErlangTuple form = (OtpErlangTuple) forms.elementAt(forms.arity()
+                    - match.suffix + i);
+            final IErlElement element = create(module, form, comments);
+            if (element != null) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    private IErlElement create(final IErlModule module, final OtpErlangTuple form,
+            final boolean comment) {
+        final IErlElement element = comment ? createComment(module, form) : create(
+                module, form);
+        if (element instanceof ErlMember) {
+            ((ErlMember) element).setForm(form);
+        }
+        return element;
     }
 
-    private List<IErlElement> createForms(final IErlModule module,
-            final OtpErlangList forms) {
-        final List<IErlElement> children = Lists.newArrayListWithCapacity(forms.arity());
-        for (final OtpErlangObject form : forms) {
-            final IErlMember elem = create(module, (OtpErlangTuple) form);
-            if (elem != null) {
-                children.add(elem);
+    private static IErlElement findSame(final List<IErlElement> elements,
+            final IErlElement element) {
+        for (final IErlElement e : elements) {
+            if (e.getKind() == element.getKind()
+                    && e.getName().equals(element.getName())) {
+                return e;
             }
         }
-        return children;
+        return null;
     }
 
     /**
@@ -177,46 +333,89 @@ public final class ErlParser implements ParserService {
      * If any typespec is available for the function (wherever it is located), then it
      * should be attached too.
      *
-     * @param module
+     * Elements kept from the previous parse are never changed, readers may hold them: a
+     * function whose comments or typespec differ is replaced by a new element.
      */
-    private void attachFunctionComments(final IErlModule module) {
+    private void attachFunctionComments(final IErlModule module,
+            final List<IErlElement> children, final List<IErlElement> oldChildren,
+            final Collection<IErlComment> comments, final List<ErlElementDelta> changes) {
         // TODO rewrite in Erlang? would be so much less code...
-        try {
-            final Collection<IErlComment> comments = module.getComments();
-            final List<IErlElement> children = module.getChildren();
-            final List<IErlMember> all = Lists
-                    .newArrayListWithCapacity(children.size() + comments.size());
-            all.addAll(comments);
-            for (final IErlElement element : children) {
-                if (element instanceof IErlMember) {
-                    all.add((IErlMember) element);
+        final List<IErlMember> all = Lists.newArrayListWithCapacity(children.size()
+                + comments.size());
+        all.addAll(comments);
+        for (final IErlElement element : children) {
+            if (element instanceof IErlMember) {
+                all.add((IErlMember) element);
+            }
+        }
+        Collections.sort(all, new SourceOffsetComparator());
+        final Map<IErlFunction, FunctionDoc> docs = new IdentityHashMap<>();
+        for (int i = 1; i < all.size(); i++) {
+            checkForComment(all, i, docs);
+        }
+        final Set<IErlElement> kept = Collections
+                .newSetFromMap(new IdentityHashMap<IErlElement, Boolean>());
+        kept.addAll(oldChildren);
+        for (int i = 0; i < children.size(); i++) {
+            if (!(children.get(i) instanceof IErlFunction)) {
+                continue;
+            }
+            IErlFunction function = (IErlFunction) children.get(i);
+            final FunctionDoc doc = docs.get(function);
+            final Collection<IErlComment> functionComments = doc == null ? Collections
+                    .<IErlComment> emptyList() : doc.comments;
+            final IErlTypespec typespec = doc == null ? null : doc.typespec;
+            if (kept.contains(function)) {
+                if (sameElements(function.getComments(), functionComments)
+                        && function.getTypespec() == typespec) {
+                    continue;
                 }
+                final OtpErlangTuple form = (OtpErlangTuple) ((ErlMember) function)
+                        .getForm();
+                function = (IErlFunction) create(module, form, false);
+                children.set(i, function);
+                changes.add(new ErlElementDelta(IErlElementDelta.CHANGED,
+                        IErlElementDelta.F_CONTENT, function));
             }
-            Collections.sort(all, new SourceOffsetComparator());
-            for (int i = 1; i < all.size(); i++) {
-                checkForComment(all, i);
+            function.setComments(functionComments);
+            function.setTypespec(typespec);
+        }
+    }
+
+    private static final class FunctionDoc {
+        final LinkedList<IErlComment> comments = Lists.newLinkedList();
+        IErlTypespec typespec;
+    }
+
+    private static boolean sameElements(final Collection<IErlComment> c1,
+            final Collection<IErlComment> c2) {
+        if (c1.size() != c2.size()) {
+            return false;
+        }
+        final Iterator<IErlComment> i2 = c2.iterator();
+        for (final IErlComment c : c1) {
+            if (c != i2.next()) {
+                return false;
             }
-        } catch (final ErlModelException e) {
-            ErlLogger.warn(e);
         }
+        return true;
     }
 
-    private void checkForComment(final List<IErlMember> all, final int i) {
+    private void checkForComment(final List<IErlMember> all, final int i,
+            final Map<IErlFunction, FunctionDoc> docs) {
         final IErlMember m = all.get(i);
         if (m instanceof IErlFunction) {
             final IErlFunction function = (IErlFunction) m;
-            final LinkedList<IErlComment> comments = Lists.newLinkedList();
-            int j = considerPrevious(i, all, comments, function);
-            j = considerPrevious(j, all, comments, function);
-            j = considerPrevious(j, all, comments, function);
-            if (!comments.isEmpty()) {
-                function.setComments(comments);
-            }
+            final FunctionDoc doc = new FunctionDoc();
+            int j = considerPrevious(i, all, doc, function);
+            j = considerPrevious(j, all, doc, function);
+            j = considerPrevious(j, all, doc, function);
+            docs.put(function, doc);
         }
     }
 
     private int considerPrevious(final int i, final List<IErlMember> all,
-            final LinkedList<IErlComment> comments, final IErlFunction function) {
+            final FunctionDoc doc, final IErlFunction function) {
         final int j = i - 1;
         if (j > 0) {
             final IErlMember member = all.get(i);
@@ -224,7 +423,7 @@ public final class ErlParser implements ParserService {
             if (prevMember instanceof IErlComment) {
                 if (prevMember.getLineEnd() + FUNCTION_COMMENT_THRESHOLD >= member
                         .getLineStart()) {
-                    comments.addFirst((IErlComment) prevMember);
+                    doc.comments.addFirst((IErlComment) prevMember);
                 }
             } else if (prevMember instanceof IErlTypespec) {
                 final IErlTypespec spec = (IErlTypespec) prevMember;
@@ -233,7 +432,7 @@ public final class ErlParser implements ParserService {
                         && spec.getArity() == function.getArity()
                         && prevMember.getLineEnd() + FUNCTION_COMMENT_THRESHOLD >= member
                                 .getLineStart()) {
-                    function.setTypespec(spec);
+                    doc.typespec = spec;
                 }
             } else {
                 return -1;
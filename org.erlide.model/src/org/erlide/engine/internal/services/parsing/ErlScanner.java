@@ -10,16 +10,44 @@
  *******************************************************************************/
 package org.erlide.engine.internal.services.parsing;
 
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.erlide.engine.internal.services.parsing.EditBatch.Edit;
 import org.erlide.engine.services.parsing.ErlToken;
 import org.erlide.engine.services.parsing.ScannerService;
 import org.erlide.runtime.rpc.IOtpRpc;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Erlang syntax scanner
  */
 public class ErlScanner implements ScannerService {
+    /**
+     * How long text changes are collected before they are sent to the backend,
+     * in milliseconds; 0 sends each change right away.
+     */
+    private static final int BATCH_DELAY = Integer.getInteger(
+            "erlide.scanner.batch.delay", 50);
+
+    private static final ScheduledThreadPoolExecutor flusher = new ScheduledThreadPoolExecutor(
+            1, new ThreadFactoryBuilder().setDaemon(true)
+                    .setNameFormat("scanner-flush-%d").build());
+
     private final String name;
     private final ErlideScanner scanner;
+    private final EditBatch pending = new EditBatch();
+    // keeps the changes of two flushes from interleaving
+    private final Object sendLock = new Object();
+    private boolean flushScheduled;
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
 
     public ErlScanner(final IOtpRpc backend, final String name) {
         this.name = name;
@@ -31,22 +59,63 @@ public class ErlScanner implements ScannerService {
     public void initialScan(final String initialText, final String path,
             final boolean logging) {
         final String pathNotNull = path == null ? "" : path;
-        scanner.initialScan(name, pathNotNull, initialText);
+        // a flush in progress must not send old edits after the new text
+        synchronized (sendLock) {
+            synchronized (this) {
+                pending.clear();
+            }
+            scanner.initialScan(name, pathNotNull, initialText);
+        }
     }
 
     @Override
     public void dispose() {
-        scanner.dispose(name);
+        synchronized (sendLock) {
+            synchronized (this) {
+                pending.clear();
+            }
+            scanner.dispose(name);
+        }
     }
 
     @Override
     public void replaceText(final int offset, final int removeLength,
             final String newText) {
-        scanner.replaceText(name, offset, removeLength, newText);
+        if (BATCH_DELAY <= 0) {
+            scanner.replaceText(name, offset, removeLength, newText);
+            return;
+        }
+        synchronized (this) {
+            pending.add(offset, removeLength, newText);
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        flusher.schedule(flushTask, BATCH_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void flush() {
+        synchronized (sendLock) {
+            final List<Edit> edits;
+            synchronized (this) {
+                flushScheduled = false;
+                if (pending.isEmpty()) {
+                    return;
+                }
+                edits = pending.drain();
+            }
+            // the backend takes one change per call
+            for (final Edit edit : edits) {
+                scanner.replaceText(name, edit.offset, edit.removeLength, edit.text);
+            }
+        }
     }
 
     @Override
     public ErlToken getTokenAt(final int offset) {
+        flush();
         return scanner.getTokenAt(name, offset);
     }
 
@@ -5,14 +5,12 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.erlide.engine.ErlangEngine;
 import org.erlide.engine.services.parsing.ErlToken;
 import org.erlide.engine.services.parsing.InternalScanner;
 import org.erlide.engine.services.parsing.ScannerException;
 import org.erlide.engine.services.parsing.SimpleScannerService;
+import org.erlide.engine.services.parsing.TokenBuffer;
 import org.erlide.runtime.rpc.IOtpRpc;
 import org.erlide.runtime.rpc.RpcException;
 import org.erlide.runtime.rpc.RpcTimeoutException;
@@ -120,8 +118,11 @@ public class ErlideScanner implements SimpleScannerService, InternalScanner {
     }
 
     @Override
-    public List<ErlToken> lightScanString(final String string, final int offset)
+    public TokenBuffer lightScanString(final String string, final int offset)
             throws ScannerException {
+        if (ErlLexer.ENABLED) {
+            return ErlLexer.scan(string, offset);
+        }
         OtpErlangObject r1 = null;
         try {
             r1 = backend.call("erlide_scanner", "light_scan_string", "ba", string,
@@ -140,17 +141,10 @@ public class ErlideScanner implements SimpleScannerService, InternalScanner {
         }
         final OtpErlangTuple t1 = (OtpErlangTuple) r1;
 
-        List<ErlToken> toks = null;
         if (Util.isOk(t1)) {
             if (t1.elementAt(1) instanceof OtpErlangBinary) {
                 final OtpErlangBinary b = (OtpErlangBinary) t1.elementAt(1);
-                final byte[] bytes = b.binaryValue();
-                toks = new ArrayList<>(bytes.length / 10);
-                for (int i = 0; i < bytes.length; i += 10) {
-                    final ErlToken tk = new ErlToken(bytes, i, offset);
-                    toks.add(tk);
-                }
-                return toks;
+                return TokenBuffer.fromPacked(b.binaryValue(), offset);
             }
             throw new ScannerException("unexpected token format");
         }
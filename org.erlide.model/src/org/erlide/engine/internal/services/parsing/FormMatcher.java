@@ -0,0 +1,255 @@
+package org.erlide.engine.internal.services.parsing;
+
+import java.util.List;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+
+/**
+ * Finds the forms (or comments) that a reparse left alone: the ones before the
+ * edited text are equal to the old ones, the ones after it are equal except
+ * that they moved by the same number of lines and characters. Only the forms in
+ * between need new model elements.
+ */
+final class FormMatcher {
+
+    /** the number of forms at the start that didn't change */
+    final int prefix;
+    /** the number of forms at the end that only moved */
+    final int suffix;
+    /** how far the forms at the end moved */
+    final int lines;
+    final int offset;
+
+    private FormMatcher(final int prefix, final int suffix, final int lines,
+            final int offset) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.lines = lines;
+        this.offset = offset;
+    }
+
+    /**
+     * @param oldForms
+     *            the terms of the previous parse, null where unknown
+     * @param comments
+     *            if the terms are comment tokens instead of forms
+     */
+    static FormMatcher match(final List<OtpErlangObject> oldForms,
+            final OtpErlangList newForms, final boolean comments) {
+        final int oldSize = oldForms.size();
+        final int newSize = newForms.arity();
+        int prefix = 0;
+        while (prefix < oldSize && prefix < newSize
+                && newForms.elementAt(prefix).equals(oldForms.get(prefix))) {
+            prefix++;
+        }
+        final int max = Math.min(oldSize, newSize) - prefix;
+        if (max == 0) {
+            return new FormMatcher(prefix, 0, 0, 0);
+        }
+        final int[] oldPos = position(oldForms.get(oldSize - 1), comments);
+        final int[] newPos = position(newForms.elementAt(newSize - 1), comments);
+        if (oldPos == null || newPos == null) {
+            return new FormMatcher(prefix, 0, 0, 0);
+        }
+        final int lines = newPos[0] - oldPos[0];
+        final int offset = newPos[1] - oldPos[1];
+        int suffix = 0;
+        while (suffix < max) {
+            final OtpErlangObject oldForm = oldForms.get(oldSize - 1 - suffix);
+            final OtpErlangObject newForm = newForms.elementAt(newSize - 1 - suffix);
+            final boolean same = comments ? sameComment(oldForm, newForm, lines, offset)
+                    : sameForm(oldForm, newForm, lines, offset);
+            if (!same) {
+                break;
+            }
+            suffix++;
+        }
+        return new FormMatcher(prefix, suffix, lines, offset);
+    }
+
+    /**
+     * @return if the forms are equal, except for the positions of the new one
+     *         that are moved by the given lines and characters
+     */
+    static boolean sameForm(final OtpErlangObject oldForm,
+            final OtpErlangObject newForm, final int lines, final int offset) {
+        if (lines == 0 && offset == 0) {
+            return newForm.equals(oldForm);
+        }
+        if (!(oldForm instanceof OtpErlangTuple)
+                || !(newForm instanceof OtpErlangTuple)) {
+            return false;
+        }
+        final OtpErlangTuple o = (OtpErlangTuple) oldForm;
+        final OtpErlangTuple n = (OtpErlangTuple) newForm;
+        if (o.arity() != n.arity() || o.arity() < 2
+                || !o.elementAt(0).equals(n.elementAt(0))) {
+            return false;
+        }
+        final String kind = ((OtpErlangAtom) o.elementAt(0)).atomValue();
+        if ("attribute".equals(kind)) {
+            return samePos(o.elementAt(1), n.elementAt(1), lines, offset)
+                    && sameExcept(o, n, 1);
+        }
+        if ("function".equals(kind) && o.arity() > 7) {
+            // -record(function, {pos, name, arity, args, head, clauses,
+            // name_pos, exported}), clauses are {clause, Pos, Name, Args, Head,
+            // NamePos}
+            if (!samePos(o.elementAt(1), n.elementAt(1), lines, offset)
+                    || !samePos(o.elementAt(7), n.elementAt(7), lines, offset)
+                    || !sameExcept(o, n, 1, 6, 7)) {
+                return false;
+            }
+            final OtpErlangObject oc = o.elementAt(6);
+            final OtpErlangObject nc = n.elementAt(6);
+            if (!(oc instanceof OtpErlangList) || !(nc instanceof OtpErlangList)
+                    || ((OtpErlangList) oc).arity() != ((OtpErlangList) nc).arity()) {
+                return false;
+            }
+            for (int i = 0; i < ((OtpErlangList) oc).arity(); i++) {
+                final OtpErlangObject ocl = ((OtpErlangList) oc).elementAt(i);
+                final OtpErlangObject ncl = ((OtpErlangList) nc).elementAt(i);
+                if (!(ocl instanceof OtpErlangTuple)
+                        || !(ncl instanceof OtpErlangTuple)) {
+                    return false;
+                }
+                final OtpErlangTuple ot = (OtpErlangTuple) ocl;
+                final OtpErlangTuple nt = (OtpErlangTuple) ncl;
+                if (ot.arity() != nt.arity() || ot.arity() < 6
+                        || !samePos(ot.elementAt(1), nt.elementAt(1), lines, offset)
+                        || !samePos(ot.elementAt(5), nt.elementAt(5), lines, offset)
+                        || !sameExcept(ot, nt, 1, 5)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // errors and syntax trees are rare, they get new elements
+        return false;
+    }
+
+    /**
+     * @return if the comment tokens are equal, except for the position of the
+     *         new one that is moved by the given lines and characters
+     */
+    static boolean sameComment(final OtpErlangObject oldComment,
+            final OtpErlangObject newComment, final int lines, final int offset) {
+        if (lines == 0 && offset == 0) {
+            return newComment.equals(oldComment);
+        }
+        if (!(oldComment instanceof OtpErlangTuple)
+                || !(newComment instanceof OtpErlangTuple)) {
+            return false;
+        }
+        final OtpErlangTuple o = (OtpErlangTuple) oldComment;
+        final OtpErlangTuple n = (OtpErlangTuple) newComment;
+        if (o.arity() != n.arity() || o.arity() <= ErlParser.LAST_LINE) {
+            return false;
+        }
+        for (int i = 0; i < o.arity(); i++) {
+            final int delta;
+            if (i == ErlParser.LINE || i == ErlParser.LAST_LINE) {
+                delta = lines;
+            } else if (i == ErlParser.OFFSET) {
+                delta = offset;
+            } else {
+                delta = 0;
+            }
+            if (!sameLong(o.elementAt(i), n.elementAt(i), delta)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the line and offset where the form or comment starts, or null
+     */
+    static int[] position(final OtpErlangObject form, final boolean comment) {
+        if (!(form instanceof OtpErlangTuple) || ((OtpErlangTuple) form).arity() < 2) {
+            return null;
+        }
+        final OtpErlangTuple t = (OtpErlangTuple) form;
+        if (comment) {
+            if (t.arity() <= ErlParser.OFFSET) {
+                return null;
+            }
+            return longs(t.elementAt(ErlParser.LINE), t.elementAt(ErlParser.OFFSET));
+        }
+        // pos = {{Line, LastLine, Offset}, Length} or {{Line, Offset}, Length}
+        final OtpErlangObject pos = t.elementAt(1);
+        if (!(pos instanceof OtpErlangTuple) || ((OtpErlangTuple) pos).arity() != 2
+                || !(((OtpErlangTuple) pos).elementAt(0) instanceof OtpErlangTuple)) {
+            return null;
+        }
+        final OtpErlangTuple start = (OtpErlangTuple) ((OtpErlangTuple) pos).elementAt(0);
+        if (start.arity() < 2) {
+            return null;
+        }
+        return longs(start.elementAt(0), start.elementAt(start.arity() - 1));
+    }
+
+    private static int[] longs(final OtpErlangObject a, final OtpErlangObject b) {
+        if (!(a instanceof OtpErlangLong) || !(b instanceof OtpErlangLong)) {
+            return null;
+        }
+        return new int[] { (int) ((OtpErlangLong) a).longValue(),
+                (int) ((OtpErlangLong) b).longValue() };
+    }
+
+    private static boolean samePos(final OtpErlangObject oldPos,
+            final OtpErlangObject newPos, final int lines, final int offset) {
+        if (!(oldPos instanceof OtpErlangTuple) || !(newPos instanceof OtpErlangTuple)) {
+            return newPos.equals(oldPos);
+        }
+        final OtpErlangTuple o = (OtpErlangTuple) oldPos;
+        final OtpErlangTuple n = (OtpErlangTuple) newPos;
+        if (o.arity() != 2 || n.arity() != 2 || !o.elementAt(1).equals(n.elementAt(1))
+                || !(o.elementAt(0) instanceof OtpErlangTuple)
+                || !(n.elementAt(0) instanceof OtpErlangTuple)) {
+            return false;
+        }
+        final OtpErlangTuple os = (OtpErlangTuple) o.elementAt(0);
+        final OtpErlangTuple ns = (OtpErlangTuple) n.elementAt(0);
+        final int arity = os.arity();
+        if (arity != ns.arity() || arity < 2 || arity > 3) {
+            return false;
+        }
+        // all but the last are lines
+        for (int i = 0; i < arity; i++) {
+            final int delta = i == arity - 1 ? offset : lines;
+            if (!sameLong(os.elementAt(i), ns.elementAt(i), delta)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameLong(final OtpErlangObject o, final OtpErlangObject n,
+            final int delta) {
+        if (delta != 0 && o instanceof OtpErlangLong && n instanceof OtpErlangLong) {
+            return ((OtpErlangLong) n).longValue() == ((OtpErlangLong) o).longValue()
+                    + delta;
+        }
+        return n.equals(o);
+    }
+
+    private static boolean sameExcept(final OtpErlangTuple o, final OtpErlangTuple n,
+            final int... skipped) {
+        int next = 0;
+        for (int i = 0; i < o.arity(); i++) {
+            if (next < skipped.length && skipped[next] == i) {
+                next++;
+            } else if (!n.elementAt(i).equals(o.elementAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
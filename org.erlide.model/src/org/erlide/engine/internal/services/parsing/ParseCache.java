@@ -0,0 +1,172 @@
+package org.erlide.engine.internal.services.parsing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.Platform;
+import org.erlide.engine.ErlangEngine;
+import org.erlide.engine.internal.ModelPlugin;
+import org.erlide.util.ErlLogger;
+import org.osgi.framework.Bundle;
+
+import com.ericsson.otp.erlang.OtpErlangDecodeException;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpOutputStream;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * The forms and comments of parsed modules, kept on disk so that opening a
+ * module whose text was parsed before (in this or an earlier session) builds
+ * its structure without asking the backend.
+ *
+ * <p>
+ * Entries are keyed on a hash of the module's path and text and of the
+ * plugin's version, so a new parser never sees old entries. They hold the
+ * {Forms, Comments} term that erlide_noparse returns, in the external term
+ * format; the model is built from it by the same code as after a parse. The
+ * <code>erlide.model.cache.size</code> (default 20000) most recently used
+ * entries are kept. The cache can be turned off with
+ * <code>-Derlide.model.cache=false</code>.
+ * </p>
+ */
+final class ParseCache {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(
+            "erlide.model.cache", "true"));
+    private static final int MAX_ENTRIES = Integer.getInteger("erlide.model.cache.size",
+            20000);
+    // bump when the key or the entry format change
+    private static final String VERSION = "1";
+    private static final String SUFFIX = ".model";
+
+    private static ParseCache instance;
+
+    private final File dir;
+    private final String version;
+    private final AtomicInteger stored = new AtomicInteger();
+    private final AtomicInteger hits = new AtomicInteger();
+
+    static synchronized ParseCache getInstance() {
+        if (instance == null) {
+            final Bundle bundle = Platform.getBundle(ModelPlugin.PLUGIN_ID);
+            instance = new ParseCache(new File(ErlangEngine.getInstance().getStateDir(),
+                    "modelcache"), bundle == null ? "" : bundle.getVersion().toString());
+        }
+        return instance;
+    }
+
+    ParseCache(final File dir, final String version) {
+        this.dir = dir;
+        this.version = version;
+    }
+
+    /**
+     * @return the key of the module's parse, or null if it can't be cached.
+     */
+    String key(final String path, final String text) {
+        if (!ENABLED || text == null) {
+            return null;
+        }
+        final Hasher hasher = Hashing.sha1().newHasher();
+        putString(hasher, VERSION);
+        putString(hasher, version);
+        putString(hasher, path);
+        putString(hasher, text);
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @return the {Forms, Comments} of the parse with the given key, or null.
+     */
+    OtpErlangTuple get(final String key) {
+        final File file = new File(dir, key + SUFFIX);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final OtpErlangTuple entry = (OtpErlangTuple) new OtpInputStream(
+                    Files.toByteArray(file)).read_any();
+            if (entry.arity() != 2 || !(entry.elementAt(0) instanceof OtpErlangList)
+                    || !(entry.elementAt(1) instanceof OtpErlangList)) {
+                throw new ClassCastException(entry.toString());
+            }
+            file.setLastModified(System.currentTimeMillis());
+            hits.incrementAndGet();
+            return entry;
+        } catch (final IOException | OtpErlangDecodeException | ClassCastException e) {
+            ErlLogger.warn("Bad model cache entry %s: %s", key, e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * @return how many entries were read since the cache was created.
+     */
+    int hits() {
+        return hits.get();
+    }
+
+    void put(final String key, final OtpErlangList forms, final OtpErlangList comments) {
+        final OtpErlangTuple entry = new OtpErlangTuple(new OtpErlangObject[] { forms,
+                comments });
+        final File file = new File(dir, key + SUFFIX);
+        // readers never see a partly written file
+        final File tmp = new File(dir, key + ".tmp");
+        try {
+            dir.mkdirs();
+            Files.write(new OtpOutputStream(entry).toByteArray(), tmp);
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                    return;
+                }
+            }
+        } catch (final IOException e) {
+            ErlLogger.warn("Could not store model cache entry %s: %s", key,
+                    e.getMessage());
+            tmp.delete();
+            return;
+        }
+        // look at the size now and then only, listing the entries is slow
+        if (stored.incrementAndGet() >= Math.max(1, MAX_ENTRIES / 10)) {
+            stored.set(0);
+            trim();
+        }
+    }
+
+    /**
+     * Drop the least recently used entries, if there are too many.
+     */
+    void trim() {
+        final File[] entries = dir.listFiles();
+        if (entries == null || entries.length <= MAX_ENTRIES) {
+            return;
+        }
+        Arrays.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(final File f1, final File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (int i = 0; i < entries.length - MAX_ENTRIES; i++) {
+            entries[i].delete();
+        }
+    }
+
+    private static void putString(final Hasher hasher, final String s) {
+        final byte[] bytes = s.getBytes(Charsets.UTF_8);
+        hasher.putInt(bytes.length).putBytes(bytes);
+    }
+
+}
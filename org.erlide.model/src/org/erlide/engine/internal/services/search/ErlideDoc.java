@@ -1,13 +1,16 @@
 package org.erlide.engine.internal.services.search;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.erlide.engine.ErlangEngine;
 import org.erlide.engine.services.search.OpenService;
 import org.erlide.engine.services.search.OtpDocService;
 import org.erlide.runtime.rpc.IOtpRpc;
+import org.erlide.runtime.rpc.IRpcBatch;
 import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcResult;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.ErlangFunctionCall;
 
@@ -17,6 +20,7 @@ import com.ericsson.otp.erlang.OtpErlangList;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangString;
 import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.collect.Lists;
 
 public class ErlideDoc implements OtpDocService {
 
@@ -55,6 +59,34 @@ public class ErlideDoc implements OtpDocService {
         return res;
     }
 
+    @Override
+    public List<OtpErlangObject> getModules(final IOtpRpc b, final String prefix,
+            final List<List<String>> projectModules, final List<Boolean> includes) {
+        final List<OtpErlangObject> res = Lists.newArrayList();
+        try {
+            final IRpcBatch batch = b.batch();
+            for (int i = 0; i < projectModules.size(); i++) {
+                final String what = includes.get(i) ? "includes" : "modules";
+                batch.add(ERLIDE_OTP_DOC, "get_modules", "slsa", prefix,
+                        projectModules.get(i), what);
+            }
+            for (final RpcResult r : batch.call()) {
+                if (r.isOk()) {
+                    res.add(r.getValue());
+                } else {
+                    ErlLogger.warn("get_modules: %s", r.getValue());
+                    res.add(null);
+                }
+            }
+        } catch (final RpcException e) {
+            ErlLogger.warn(e);
+            res.clear();
+            res.addAll(Collections.<OtpErlangObject> nCopies(projectModules.size(),
+                    null));
+        }
+        return res;
+    }
+
     @Override
     public OtpErlangObject getOtpDoc(final IOtpRpc b,
             final ErlangFunctionCall functionCall) {
@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.erlide.runtime.rpc.IOtpRpc;
 import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcResult;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.Util;
 
@@ -47,13 +48,16 @@ public class ErlideXref {
 
     public static void setScope(final IOtpRpc backend, final List<String> scope) {
         final List<String> mods = modules(backend);
-        removeModules(backend, mods);
-        addDirs(backend, scope);
-    }
-
-    private static void removeModules(final IOtpRpc backend, final List<String> mods) {
         try {
-            backend.call(ERLIDE_XREF, "remove_modules", "ls", mods);
+            final List<RpcResult> results = backend.batch()
+                    .add(ERLIDE_XREF, "remove_modules", "ls", mods)
+                    .add(ERLIDE_XREF, "add_dirs", "ls", scope).call();
+            if (!results.get(0).isOk()) {
+                ErlLogger.error("xref remove_modules: %s", results.get(0).getValue());
+            }
+            if (!results.get(1).isOk()) {
+                ErlLogger.warn("xref add_dirs: %s", results.get(1).getValue());
+            }
         } catch (final RpcException e) {
             ErlLogger.error(e);
         }
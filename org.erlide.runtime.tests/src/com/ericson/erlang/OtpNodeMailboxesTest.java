@@ -0,0 +1,137 @@
+package com.ericson.erlang;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpNode;
+
+/**
+ * Exercises the mailbox registry the way concurrent RPC callers do: every call
+ * creates a reply mailbox, gets one message delivered to it through the node
+ * and closes it again. Needs a running epmd, like the other runtime tests.
+ */
+public class OtpNodeMailboxesTest {
+
+    private static final int CALLERS = 16;
+    private static final int CALLS = 5000;
+
+    private OtpNode node;
+    private OtpMbox server;
+    private Thread serverThread;
+
+    @Before
+    public void startNode() throws Exception {
+        node = new OtpNode("mboxtest" + System.currentTimeMillis());
+        server = node.createMbox("server");
+        serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // echo {From, N} back to From, like rex does
+                try {
+                    while (true) {
+                        final OtpErlangTuple msg = (OtpErlangTuple) server.receive();
+                        server.send((OtpErlangPid) msg.elementAt(0), msg.elementAt(1));
+                    }
+                } catch (final Exception e) {
+                    // mailbox closed
+                }
+            }
+        }, "mboxtest-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    @After
+    public void stopNode() {
+        node.closeMbox(server);
+        node.close();
+    }
+
+    @Test
+    public void concurrentCallersGetTheirOwnReplies() throws Exception {
+        final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        final CountDownLatch go = new CountDownLatch(1);
+        final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    go.await();
+                    int ok = 0;
+                    for (int n = 0; n < CALLS; n++) {
+                        final OtpMbox mbox = node.createMbox();
+                        try {
+                            mbox.send("server", node.node(), new OtpErlangTuple(
+                                    new OtpErlangObject[] { mbox.self(),
+                                            new OtpErlangLong(n) }));
+                            final OtpErlangObject reply = mbox.receive(5000);
+                            if (reply != null && ((OtpErlangLong) reply).intValue() == n) {
+                                ok++;
+                            }
+                        } finally {
+                            node.closeMbox(mbox);
+                        }
+                    }
+                    return ok;
+                }
+            }));
+        }
+        go.countDown();
+        int total = 0;
+        for (final Future<Integer> result : results) {
+            total += result.get();
+        }
+        callers.shutdown();
+        assertThat(total, is(CALLERS * CALLS));
+    }
+
+    @Test
+    public void collectedMailboxIsUnregistered() throws Exception {
+        final OtpMbox mbox = node.createMbox("collected");
+        assertThat(node.whereis("collected"), is(not(nullValue())));
+        final Map<String, ?> byName = registry("byName");
+        final Map<OtpErlangPid, ?> byPid = registry("byPid");
+        // do what the collector does with the mailbox's reference
+        final Reference<?> ref = (Reference<?>) byName.get("collected");
+        ref.clear();
+        ref.enqueue();
+
+        node.createMbox();
+        assertThat(byName.containsKey("collected"), is(false));
+        assertThat(byPid.containsKey(mbox.self()), is(false));
+        assertThat(node.createMbox("collected"), is(not(nullValue())));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K> Map<K, ?> registry(final String name) throws Exception {
+        final Field mboxes = OtpNode.class.getDeclaredField("mboxes");
+        mboxes.setAccessible(true);
+        final Object registry = mboxes.get(node);
+        final Field field = registry.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return (Map<K, ?>) field.get(registry);
+    }
+
+}
@@ -0,0 +1,177 @@
+package org.erlide.runtime.api;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.erlide.runtime.rpc.IOtpRpc;
+import org.erlide.runtime.rpc.IRpcBatch;
+import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcFuture;
+import org.erlide.runtime.rpc.RpcResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+
+public class BeamLoaderTest {
+
+    private static final OtpErlangBinary BEAM = new OtpErlangBinary(new byte[10]);
+
+    private final Map<String, OtpErlangBinary> beams = Maps.newTreeMap();
+    private final Set<String> sticky = Sets.newHashSet();
+    // the modules of each code:atomic_load call
+    private final List<List<String>> atomicLoads = Lists.newArrayList();
+    // code:atomic_load calls that fail, counting from 1
+    private int failingAtomicLoad;
+    private final Map<String, String> refused = Maps.newHashMap();
+    // the modules given to code:load_binary
+    private final List<String> loadBinaries = Lists.newArrayList();
+    private IOtpRpc backend;
+
+    @Before
+    public void setUp() {
+        for (final String module : new String[] { "a", "b", "c", "d" }) {
+            beams.put(module, BEAM);
+        }
+        backend = (IOtpRpc) Proxy.newProxyInstance(IOtpRpc.class.getClassLoader(),
+                new Class<?>[] { IOtpRpc.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                            final Object[] args) throws RpcException {
+                        if ("batch".equals(method.getName())) {
+                            return new StickyBatch();
+                        } else if ("async_call".equals(method.getName())) {
+                            // code:load_binary(Module, File, Binary)
+                            final String module = (String) ((Object[]) args[3])[0];
+                            loadBinaries.add(module);
+                            return new RpcFuture(null, Futures
+                                    .immediateFuture((OtpErlangObject) new OtpErlangTuple(
+                                            new OtpErlangObject[] {
+                                                    new OtpErlangAtom("module"),
+                                                    new OtpErlangAtom(module) })), "",
+                                    false);
+                        }
+                        // call(timeout, "code", "atomic_load", "x", [modules])
+                        return atomicLoad((OtpErlangList) ((Object[]) args[4])[0]);
+                    }
+                });
+    }
+
+    @Test
+    public void stickyModulesAreLeftOut() {
+        sticky.add("b");
+        final Map<String, OtpErlangBinary> result = BeamLoader.withoutSticky(backend,
+                beams, Maps.<String, String> newHashMap());
+        assertThat(result.keySet(), containsInAnyOrder("a", "c", "d"));
+    }
+
+    @Test
+    public void modulesAreLoadedInOneBatch() {
+        sticky.add("b");
+        final Map<String, String> failed = BeamLoader.loadBeams(backend, beams);
+        assertThat(atomicLoads.size(), is(1));
+        assertThat(atomicLoads.get(0), containsInAnyOrder("a", "c", "d"));
+        assertThat(loadBinaries, is(empty()));
+        assertThat(failed.size(), is(1));
+        assertThat(failed, hasEntry("b", "sticky"));
+    }
+
+    @Test
+    public void notPurgedModulesAreLoadedOneByOne() {
+        refused.put("c", "not_purged");
+        refused.put("d", "badfile");
+        final Map<String, String> failed = BeamLoader.loadBeams(backend, beams);
+        assertThat(atomicLoads.size(), is(2));
+        assertThat(atomicLoads.get(1), containsInAnyOrder("a", "b"));
+        assertThat(loadBinaries, contains("c"));
+        assertThat(failed.size(), is(1));
+        assertThat(failed, hasEntry("d", "badfile"));
+    }
+
+    @Test
+    public void failedBatchOnlyReloadsWhatWasNotLoaded() {
+        failingAtomicLoad = 2;
+        // two modules per batch
+        final Map<String, String> failed = BeamLoader.loadBeams(backend, beams,
+                2 * BEAM.size());
+        assertThat(atomicLoads.size(), is(1));
+        final Set<String> rest = Sets.newHashSet(beams.keySet());
+        rest.removeAll(atomicLoads.get(0));
+        assertThat(loadBinaries, containsInAnyOrder(rest.toArray()));
+        assertThat(failed.isEmpty(), is(true));
+    }
+
+    private OtpErlangObject atomicLoad(final OtpErlangList modules) throws RpcException {
+        if (atomicLoads.size() + 1 == failingAtomicLoad) {
+            failingAtomicLoad = 0;
+            throw new RpcException("undef");
+        }
+        final List<String> names = Lists.newArrayList();
+        final List<OtpErlangObject> errors = Lists.newArrayList();
+        for (final OtpErlangObject module : modules) {
+            final String name = ((OtpErlangAtom) ((OtpErlangTuple) module).elementAt(0))
+                    .atomValue();
+            names.add(name);
+            final String reason = refused.remove(name);
+            if (reason != null) {
+                errors.add(new OtpErlangTuple(new OtpErlangObject[] {
+                        new OtpErlangAtom(name), new OtpErlangAtom(reason) }));
+            }
+        }
+        atomicLoads.add(names);
+        if (!errors.isEmpty()) {
+            final OtpErlangObject[] list = errors.toArray(new OtpErlangObject[errors
+                    .size()]);
+            return new OtpErlangTuple(new OtpErlangObject[] { new OtpErlangAtom("error"),
+                    new OtpErlangList(list) });
+        }
+        return new OtpErlangAtom("ok");
+    }
+
+    // answers code:is_sticky/1
+    private class StickyBatch implements IRpcBatch {
+        private final List<RpcResult> results = Lists.newArrayList();
+
+        @Override
+        public IRpcBatch add(final String m, final String f, final String signature,
+                final Object... args) {
+            results.add(new RpcResult(new OtpErlangAtom(sticky.contains(args[0]))));
+            return this;
+        }
+
+        @Override
+        public int size() {
+            return results.size();
+        }
+
+        @Override
+        public List<RpcResult> call() {
+            return results;
+        }
+
+        @Override
+        public List<RpcResult> call(final long timeout) {
+            return results;
+        }
+    }
+
+}
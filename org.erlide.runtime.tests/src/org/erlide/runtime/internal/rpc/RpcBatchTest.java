@@ -0,0 +1,113 @@
+package org.erlide.runtime.internal.rpc;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import org.erlide.runtime.rpc.IOtpRpc;
+import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangExternalFun;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+
+public class RpcBatchTest {
+
+    private static final OtpErlangAtom RPC = new OtpErlangAtom("rpc");
+    private static final OtpErlangAtom CALL = new OtpErlangAtom("call");
+
+    // the arguments of the last call(timeout, m, f, signature, args)
+    private Object[] sent;
+    private OtpErlangObject reply;
+    private RpcBatch batch;
+
+    @Before
+    public void setUp() {
+        batch = new RpcBatch((IOtpRpc) Proxy.newProxyInstance(
+                IOtpRpc.class.getClassLoader(), new Class<?>[] { IOtpRpc.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                            final Object[] args) {
+                        sent = args;
+                        return reply;
+                    }
+                }), "n@h");
+    }
+
+    @Test
+    public void callsAreSentAsOneZipwith3() throws RpcException {
+        batch.add("m", "f", "i", 1).add("m", "g", "");
+        reply = new OtpErlangList(new OtpErlangObject[] { new OtpErlangLong(2),
+                new OtpErlangAtom("ok") });
+        batch.call(1000);
+
+        assertThat(sent[0], is((Object) 1000L));
+        assertThat(sent[1], is((Object) "lists"));
+        assertThat(sent[2], is((Object) "zipwith3"));
+        final Object[] args = (Object[]) sent[4];
+        assertThat(args[0], is((Object) new OtpErlangExternalFun("erlang", "apply", 3)));
+        assertThat(args[1], is((Object) new OtpErlangList(new OtpErlangObject[] { RPC,
+                RPC })));
+        assertThat(args[2], is((Object) new OtpErlangList(new OtpErlangObject[] { CALL,
+                CALL })));
+        final OtpErlangList calls = (OtpErlangList) args[3];
+        assertThat(calls.arity(), is(2));
+        assertThat(calls.elementAt(0), is((OtpErlangObject) new OtpErlangList(
+                new OtpErlangObject[] { new OtpErlangAtom("n@h"), new OtpErlangAtom("m"),
+                        new OtpErlangAtom("f"),
+                        new OtpErlangList(new OtpErlangLong(1)) })));
+        assertThat(calls.elementAt(1), is((OtpErlangObject) new OtpErlangList(
+                new OtpErlangObject[] { new OtpErlangAtom("n@h"), new OtpErlangAtom("m"),
+                        new OtpErlangAtom("g"), new OtpErlangList() })));
+    }
+
+    @Test
+    public void eachCallGetsItsOwnResult() throws RpcException {
+        batch.add("m", "f", "").add("m", "g", "");
+        reply = new OtpErlangList(new OtpErlangObject[] {
+                new OtpErlangAtom("ok"),
+                new OtpErlangTuple(new OtpErlangObject[] { new OtpErlangAtom("badrpc"),
+                        new OtpErlangAtom("undef") }) });
+        final List<RpcResult> results = batch.call();
+
+        assertThat(results.size(), is(2));
+        assertThat(results.get(0).isOk(), is(true));
+        assertThat(results.get(0).getValue(), is((OtpErlangObject) new OtpErlangAtom(
+                "ok")));
+        assertThat(results.get(1).isOk(), is(false));
+        assertThat(results.get(1).getValue(), is((OtpErlangObject) new OtpErlangAtom(
+                "undef")));
+    }
+
+    @Test
+    public void emptyBatchIsNotSent() throws RpcException {
+        assertThat(batch.call(), is(empty()));
+        assertThat(sent, is(nullValue()));
+    }
+
+    @Test(expected = RpcException.class)
+    public void wrongNumberOfResultsIsAnError() throws RpcException {
+        batch.add("m", "f", "").add("m", "g", "");
+        reply = new OtpErlangList(new OtpErlangAtom("ok"));
+        batch.call();
+    }
+
+    @Test(expected = RpcException.class)
+    public void badSignatureIsAnError() throws RpcException {
+        batch.add("m", "f", "i", "not an int");
+    }
+
+}
@@ -2,18 +2,35 @@ package org.erlide.runtime.api;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.erlide.runtime.rpc.IOtpRpc;
+import org.erlide.runtime.rpc.IRpcBatch;
+import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcFuture;
+import org.erlide.runtime.rpc.RpcResult;
 import org.erlide.util.ErlLogger;
 
 import com.ericsson.otp.erlang.OtpErlangAtom;
 import com.ericsson.otp.erlang.OtpErlangBinary;
 import com.ericsson.otp.erlang.OtpErlangList;
 import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
 import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class BeamLoader {
 
+    // beams sent to the backend in one call
+    private static final int MAX_BATCH_BYTES = 8 * 1024 * 1024;
+    private static final long BATCH_TIMEOUT = 60000;
+
     public static boolean loadBeam(final IOtpRpc backend, final String moduleName,
             final OtpErlangBinary bin) {
         OtpErlangObject r = null;
@@ -45,6 +62,193 @@ public class BeamLoader {
         return false;
     }
 
+    /**
+     * Load several modules, with as few round trips as possible. The beams are
+     * sent in a few large batches, each loaded with a single
+     * code:atomic_load/1 call. Modules that it refuses are reported, except
+     * those with old code still in use or with an on_load function, which are
+     * loaded one by one with code:load_binary/3 like {@link #loadBeam} does.
+     * Runtimes without atomic_load get all the load_binary calls at once and
+     * the replies are collected afterwards. As with {@link #loadBeam}, modules
+     * in sticky directories are not loaded.
+     *
+     * @return the modules that could not be loaded, with the reason
+     */
+    public static Map<String, String> loadBeams(final IOtpRpc backend,
+            final Map<String, OtpErlangBinary> beams) {
+        return loadBeams(backend, beams, MAX_BATCH_BYTES);
+    }
+
+    static Map<String, String> loadBeams(final IOtpRpc backend,
+            final Map<String, OtpErlangBinary> beams, final int maxBatchBytes) {
+        final Map<String, String> failed = Maps.newHashMap();
+        final Map<String, OtpErlangBinary> toLoad = withoutSticky(backend, beams, failed);
+        // the modules that no batch has handled yet
+        final Map<String, OtpErlangBinary> pending = Maps.newLinkedHashMap(toLoad);
+        final List<String> retry = Lists.newArrayList();
+        final List<OtpErlangObject> batch = Lists.newArrayList();
+        int batchSize = 0;
+        for (final Entry<String, OtpErlangBinary> beam : toLoad.entrySet()) {
+            batch.add(new OtpErlangTuple(new OtpErlangObject[] {
+                    new OtpErlangAtom(beam.getKey()),
+                    new OtpErlangString(beam.getKey() + ".erl"), beam.getValue() }));
+            batchSize += beam.getValue().size();
+            if (batchSize >= maxBatchBytes) {
+                if (!loadBatch(backend, batch, failed, retry)) {
+                    return loadRest(backend, beams, pending, retry, failed);
+                }
+                for (final OtpErlangObject module : batch) {
+                    pending.remove(moduleName(module));
+                }
+                batch.clear();
+                batchSize = 0;
+            }
+        }
+        if (!batch.isEmpty() && !loadBatch(backend, batch, failed, retry)) {
+            return loadRest(backend, beams, pending, retry, failed);
+        }
+        if (!retry.isEmpty()) {
+            final Map<String, OtpErlangBinary> rest = Maps.newHashMap();
+            for (final String module : retry) {
+                rest.put(module, beams.get(module));
+            }
+            failed.putAll(loadEach(backend, rest));
+        }
+        return failed;
+    }
+
+    /*
+     * The runtime can't load batches: load one by one what the earlier batches
+     * didn't load, leaving alone the modules they did.
+     */
+    private static Map<String, String> loadRest(final IOtpRpc backend,
+            final Map<String, OtpErlangBinary> beams,
+            final Map<String, OtpErlangBinary> pending, final List<String> retry,
+            final Map<String, String> failed) {
+        pending.keySet().removeAll(failed.keySet());
+        for (final String module : retry) {
+            pending.put(module, beams.get(module));
+        }
+        failed.putAll(loadEach(backend, pending));
+        return failed;
+    }
+
+    /*
+     * Loads the batch, leaving out the modules that atomic_load refuses.
+     * Returns false if the runtime can't load batches.
+     */
+    private static boolean loadBatch(final IOtpRpc backend,
+            final List<OtpErlangObject> batch, final Map<String, String> failed,
+            final List<String> retry) {
+        List<OtpErlangObject> todo = batch;
+        while (!todo.isEmpty()) {
+            final OtpErlangList modules = new OtpErlangList(
+                    todo.toArray(new OtpErlangObject[todo.size()]));
+            final OtpErlangObject r;
+            try {
+                r = backend.call(BATCH_TIMEOUT, "code", "atomic_load", "x", modules);
+            } catch (final RpcException e) {
+                ErlLogger.debug("code:atomic_load failed, loading modules one by one: %s",
+                        e.getMessage());
+                return false;
+            }
+            if (!(r instanceof OtpErlangTuple)) {
+                return true;
+            }
+            // {error, [{Module, What}]}: none of the batch was loaded
+            final Set<String> refused = Sets.newHashSet();
+            for (final OtpErlangObject o : (OtpErlangList) ((OtpErlangTuple) r)
+                    .elementAt(1)) {
+                final String module = moduleName(o);
+                final String reason = ((OtpErlangTuple) o).elementAt(1).toString();
+                refused.add(module);
+                // load_binary handles these, one module at a time
+                if ("not_purged".equals(reason) || "on_load_not_allowed".equals(reason)) {
+                    retry.add(module);
+                } else {
+                    failed.put(module, reason);
+                }
+            }
+            final List<OtpErlangObject> rest = Lists.newArrayList();
+            for (final OtpErlangObject o : todo) {
+                if (!refused.contains(moduleName(o))) {
+                    rest.add(o);
+                }
+            }
+            if (rest.size() == todo.size()) {
+                // shouldn't happen, but don't loop forever
+                for (final OtpErlangObject o : rest) {
+                    failed.put(moduleName(o), r.toString());
+                }
+                return true;
+            }
+            todo = rest;
+        }
+        return true;
+    }
+
+    /*
+     * Leaves out the modules in sticky directories, checking them all in one
+     * round trip.
+     */
+    static Map<String, OtpErlangBinary> withoutSticky(final IOtpRpc backend,
+            final Map<String, OtpErlangBinary> beams, final Map<String, String> failed) {
+        final List<String> modules = Lists.newArrayList(beams.keySet());
+        final List<RpcResult> results;
+        try {
+            final IRpcBatch batch = backend.batch();
+            for (final String module : modules) {
+                batch.add("code", "is_sticky", "a", module);
+            }
+            results = batch.call();
+        } catch (final RpcException e) {
+            ErlLogger.warn(e);
+            return beams;
+        }
+        final Map<String, OtpErlangBinary> result = Maps.newHashMap(beams);
+        for (int i = 0; i < modules.size(); i++) {
+            final OtpErlangObject r = results.get(i).getValue();
+            if (r instanceof OtpErlangAtom && ((OtpErlangAtom) r).booleanValue()) {
+                ErlLogger.warn("sticky:: %s", modules.get(i));
+                result.remove(modules.get(i));
+                failed.put(modules.get(i), "sticky");
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, String> loadEach(final IOtpRpc backend,
+            final Map<String, OtpErlangBinary> beams) {
+        final Map<String, String> failed = Maps.newHashMap();
+        final Map<String, RpcFuture> results = Maps.newHashMap();
+        for (final Entry<String, OtpErlangBinary> beam : beams.entrySet()) {
+            final String module = beam.getKey();
+            try {
+                results.put(module, backend.async_call("code", "load_binary", "asb",
+                        module, module + ".erl", beam.getValue()));
+            } catch (final RpcException e) {
+                failed.put(module, e.getMessage());
+            }
+        }
+        for (final Entry<String, RpcFuture> result : results.entrySet()) {
+            OtpErlangObject r;
+            try {
+                r = result.getValue().checkedGet(BATCH_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (final RpcException | TimeoutException e) {
+                r = null;
+            }
+            if (!(r instanceof OtpErlangTuple && "module".equals(moduleName(r)))) {
+                failed.put(result.getKey(), String.valueOf(r));
+            }
+        }
+        return failed;
+    }
+
+    // the atom at the head of a tuple
+    private static String moduleName(final OtpErlangObject tuple) {
+        return ((OtpErlangAtom) ((OtpErlangTuple) tuple).elementAt(0)).atomValue();
+    }
+
     public static void reloadAllCode(final IOtpRpc backend) {
         try {
             final OtpErlangList loaded = (OtpErlangList) backend.call("code",
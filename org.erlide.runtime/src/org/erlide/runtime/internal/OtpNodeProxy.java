@@ -24,6 +24,7 @@ import org.erlide.runtime.events.ErlEvent;
 import org.erlide.runtime.events.ErlangLogEventHandler;
 import org.erlide.runtime.events.LogEventHandler;
 import org.erlide.runtime.internal.rpc.OtpRpc;
+import org.erlide.runtime.internal.rpc.RpcDispatcher;
 import org.erlide.runtime.rpc.IOtpRpc;
 import org.erlide.runtime.runtimeinfo.RuntimeVersion;
 import org.erlide.runtime.service.CooldownRestartPolicy;
@@ -63,6 +64,7 @@ public class OtpNodeProxy implements IOtpNodeProxy {
     final ErlRuntimeReporter reporter;
     private OtpMbox eventMBox;
     private IOtpRpc otpRpc;
+    private RpcDispatcher rpcDispatcher;
     private final EventBus eventBus;
     private final EventParser eventHelper;
     private Process process = null;
@@ -154,6 +156,9 @@ public class OtpNodeProxy implements IOtpNodeProxy {
     @Override
     public void dispose() {
         otpRpc.setConnected(false);
+        if (rpcDispatcher != null) {
+            rpcDispatcher.stop();
+        }
         localNode.close();
         service.stopAsync();
     }
@@ -459,7 +464,10 @@ public class OtpNodeProxy implements IOtpNodeProxy {
             localNode = LocalNodeCreator.startLocalNode(OtpNodeProxy.this,
                     data.getCookie(), data.hasLongName());
             eventMBox = createMbox("rex");
-            otpRpc = new OtpRpc(localNode, getNodeName());
+            if (RpcDispatcher.ENABLED) {
+                rpcDispatcher = new RpcDispatcher(localNode, getNodeName());
+            }
+            otpRpc = new OtpRpc(localNode, getNodeName(), rpcDispatcher);
         }
     }
 
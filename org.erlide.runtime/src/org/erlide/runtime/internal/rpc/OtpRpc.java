@@ -7,6 +7,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.erlide.runtime.rpc.IOtpRpc;
+import org.erlide.runtime.rpc.IRpcBatch;
 import org.erlide.runtime.rpc.IRpcCallback;
 import org.erlide.runtime.rpc.IRpcResultCallback;
 import org.erlide.runtime.rpc.RpcException;
@@ -30,17 +31,24 @@ import com.ericsson.otp.erlang.OtpErlangRef;
 import com.ericsson.otp.erlang.OtpErlangTuple;
 import com.ericsson.otp.erlang.OtpMbox;
 import com.ericsson.otp.erlang.OtpNode;
+import com.ericsson.otp.erlang.OtpOutputStream;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class OtpRpc implements IOtpRpc {
 
     private static final OtpErlangAtom USER_ATOM = new OtpErlangAtom("user");
+    private static final OtpErlangAtom GEN_CALL_ATOM = new OtpErlangAtom("$gen_call");
 
     public static final long INFINITY = Long.MAX_VALUE;
 
     // use this for debugging
     public static final boolean CHECK_RPC = Boolean.getBoolean("erlide.checkrpc");
 
+    // how many idle reply mailboxes to keep; 0 disables pooling
+    private static final int MBOX_POOL_SIZE = Integer.getInteger("erlide.rpc.mboxpool",
+            32);
+
     public static long DEFAULT_TIMEOUT;
     {
         setDefaultTimeout();
@@ -53,17 +61,37 @@ public class OtpRpc implements IOtpRpc {
 
     private final String nodeName;
     private final OtpNode localNode;
+    private final RpcMailboxPool mailboxes;
+    private final RpcDispatcher dispatcher;
     private volatile boolean connected;
 
     public OtpRpc(final OtpNode localNode, final String nodeName) {
+        this(localNode, nodeName, null);
+    }
+
+    /**
+     * @param dispatcher
+     *            receives the replies of all calls; if null, each call waits
+     *            for its reply in its own mailbox.
+     */
+    public OtpRpc(final OtpNode localNode, final String nodeName,
+            final RpcDispatcher dispatcher) {
         this.localNode = localNode;
         this.nodeName = nodeName;
+        this.dispatcher = dispatcher;
+        mailboxes = new RpcMailboxPool(localNode, MBOX_POOL_SIZE);
         connected = false;
     }
 
     @Override
     public void setConnected(final boolean connected) {
         this.connected = connected;
+        if (!connected) {
+            mailboxes.clear();
+            if (dispatcher != null) {
+                dispatcher.failPending(String.format("backend %s down", nodeName));
+            }
+        }
     }
 
     @Override
@@ -74,9 +102,13 @@ public class OtpRpc implements IOtpRpc {
         try {
             final Object[] args1 = new Object[args.length + 1];
             System.arraycopy(args, 0, args1, 1, args.length);
-            final OtpMbox mbox = localNode.createMbox();
-            args1[0] = mbox.self();
-            new RpcResultReceiver(mbox, cb);
+            if (dispatcher != null) {
+                args1[0] = dispatcher.openStream(cb).self();
+            } else {
+                final OtpMbox mbox = localNode.createMbox();
+                args1[0] = mbox.self();
+                new RpcResultReceiver(mbox, cb);
+            }
             rpcCast(localNode, nodeName, false, gleader, m, f, signature, args1);
         } catch (final SignatureException e) {
             throw new RpcException(e);
@@ -89,8 +121,8 @@ public class OtpRpc implements IOtpRpc {
             throws RpcException {
         checkConnected();
         try {
-            return sendRpcCall(localNode, nodeName, false, gleader, module, fun,
-                    signature, args0);
+            return sendRpcCall(localNode, nodeName, false, INFINITY, gleader, module,
+                    fun, signature, args0);
         } catch (final SignatureException e) {
             throw new RpcException(e);
         }
@@ -115,8 +147,8 @@ public class OtpRpc implements IOtpRpc {
             final String signature, final Object... args) throws RpcException {
         checkConnected();
         try {
-            final RpcFuture future = sendRpcCall(localNode, nodeName, false, gleader,
-                    module, fun, signature, args);
+            final RpcFuture future = sendRpcCall(localNode, nodeName, false, timeout,
+                    gleader, module, fun, signature, args);
             final Runnable target = new Runnable() {
                 @Override
                 public void run() {
@@ -125,14 +157,21 @@ public class OtpRpc implements IOtpRpc {
                         result = future.checkedGet(timeout, TimeUnit.MILLISECONDS);
                         cb.onSuccess(result);
                     } catch (final Exception e) {
+                        // does nothing if the reply was received
+                        future.abandon();
                         ErlLogger.error("Could not execute RPC " + module + ":" + fun
                                 + " : " + e.getMessage());
                         cb.onFailure(e);
                     }
                 }
             };
-            // We can't use jobs here, it's an Eclipse dependency
-            threadPool.execute(target);
+            if (dispatcher != null) {
+                // the reply is already there when the listener runs
+                future.addListener(target, threadPool);
+            } else {
+                // We can't use jobs here, it's an Eclipse dependency
+                threadPool.execute(target);
+            }
         } catch (final SignatureException e) {
             throw new RpcException(e);
         }
@@ -145,9 +184,15 @@ public class OtpRpc implements IOtpRpc {
         checkConnected();
         OtpErlangObject result = null;
         try {
-            final RpcFuture future = sendRpcCall(localNode, nodeName, false, gleader,
-                    module, fun, signature, args0);
-            result = future.checkedGet(timeout, TimeUnit.MILLISECONDS);
+            // the dispatcher forgets the call when it times out
+            final RpcFuture future = sendRpcCall(localNode, nodeName, false, timeout,
+                    gleader, module, fun, signature, args0);
+            try {
+                result = future.checkedGet(timeout, TimeUnit.MILLISECONDS);
+            } catch (final RpcTimeoutException e) {
+                future.abandon();
+                throw e;
+            }
             if (CHECK_RPC) {
                 ErlLogger.debug("RPC result:: " + result);
             }
@@ -185,6 +230,11 @@ public class OtpRpc implements IOtpRpc {
         cast(USER_ATOM, module, fun, signature, args0);
     }
 
+    @Override
+    public IRpcBatch batch() {
+        return new RpcBatch(this, nodeName);
+    }
+
     @Override
     public void send(final OtpErlangPid pid, final Object msg) {
         try {
@@ -300,24 +350,36 @@ public class OtpRpc implements IOtpRpc {
         return false;
     }
 
+    /**
+     * @param timeout
+     *            only used with a dispatcher: fail the future if no reply came
+     *            in time. Callers that wait with a timeout themselves should use
+     *            {@link #INFINITY}.
+     */
+    @SuppressWarnings("resource")
     private synchronized RpcFuture sendRpcCall(final OtpNode node, final String peer,
-            final boolean logCalls, final OtpErlangObject gleader, final String module,
-            final String fun, final String signature, final Object... args0)
-            throws SignatureException {
+            final boolean logCalls, final long timeout, final OtpErlangObject gleader,
+            final String module, final String fun, final String signature,
+            final Object... args0) throws SignatureException {
         final OtpErlangObject[] args = convertArgs(signature, args0);
+        if (dispatcher != null) {
+            return dispatchRpcCall(node, peer, logCalls, timeout, gleader, module, fun,
+                    args);
+        }
 
         OtpErlangObject res = null;
-        final OtpMbox mbox = node.createMbox();
+        final OtpMbox mbox = mailboxes.lease();
         res = buildRpcCall(mbox.self(), gleader, module, fun, args);
         if (logCalls) {
             final Object[] args01 = { module, fun, argString(args) };
             ErlLogger.debug("call -> %s:%s(%s)", args01);
         }
-        //
+        // encode only once, the monitor gets the size for free
+        final OtpOutputStream payload = new OtpOutputStream(res);
         final OtpErlangRef ref = RpcMonitor.recordRequest(node, peer, module, fun, args,
-                OtpErlang.sizeOf(res));
+                payload.size());
         //
-        mbox.send("rex", peer, res);
+        mbox.send("rex", peer, payload);
         if (CHECK_RPC) {
             ErlLogger.debug("RPC " + mbox.hashCode() + "=> " + res);
         }
@@ -325,6 +387,30 @@ public class OtpRpc implements IOtpRpc {
                 this);
     }
 
+    @SuppressWarnings("resource")
+    private RpcFuture dispatchRpcCall(final OtpNode node, final String peer,
+            final boolean logCalls, final long timeout, final OtpErlangObject gleader,
+            final String module, final String fun, final OtpErlangObject[] args) {
+        if (logCalls) {
+            final Object[] args01 = { module, fun, argString(args) };
+            ErlLogger.debug("call -> %s:%s(%s)", args01);
+        }
+        final OtpErlangRef ref = node.createRef();
+        final OtpErlangObject msg = OtpErlang.mkTuple(GEN_CALL_ATOM,
+                OtpErlang.mkTuple(dispatcher.self(), ref),
+                buildCall(gleader, module, fun, args));
+        final OtpOutputStream payload = new OtpOutputStream(msg);
+        RpcMonitor.recordRequest(ref, peer, module, fun, args, payload.size());
+        final String env = module + ":" + fun + "/" + args.length;
+        final ListenableFuture<OtpErlangObject> reply = dispatcher.expect(ref, timeout,
+                env);
+        dispatcher.send("rex", peer, payload);
+        if (CHECK_RPC) {
+            ErlLogger.debug("RPC " + ref + "=> " + msg);
+        }
+        return new RpcFuture(ref, reply, env, logCalls);
+    }
+
     private static final String SEP = ", ";
 
     private Object argString(final OtpErlangObject[] args) {
@@ -365,7 +451,7 @@ public class OtpRpc implements IOtpRpc {
                 }
             } finally {
                 if (res != null) {
-                    mbox.close();
+                    mailboxes.release(mbox);
                 }
             }
             if (res == null) {
@@ -382,21 +468,32 @@ public class OtpRpc implements IOtpRpc {
             res = t.elementAt(1);
 
         } catch (final OtpErlangExit e) {
+            mailboxes.discard(mbox);
             throw new RpcException(e);
         } catch (final OtpErlangDecodeException e) {
+            mailboxes.discard(mbox);
             throw new RpcException(e);
         }
         return res;
     }
 
+    @Override
+    public void discardRpcMailbox(final OtpMbox mbox) {
+        mailboxes.discard(mbox);
+    }
+
     private OtpErlangObject buildRpcCall(final OtpErlangPid pid,
             final OtpErlangObject gleader, final String module, final String fun,
             final OtpErlangObject[] args) {
+        return OtpErlang.mkTuple(pid, buildCall(gleader, module, fun, args));
+    }
+
+    private OtpErlangObject buildCall(final OtpErlangObject gleader, final String module,
+            final String fun, final OtpErlangObject[] args) {
         final OtpErlangObject m = new OtpErlangAtom(module);
         final OtpErlangObject f = new OtpErlangAtom(fun);
         final OtpErlangObject a = new OtpErlangList(args);
-        return OtpErlang.mkTuple(pid,
-                OtpErlang.mkTuple(new OtpErlangAtom("call"), m, f, a, gleader));
+        return OtpErlang.mkTuple(new OtpErlangAtom("call"), m, f, a, gleader);
     }
 
     private void rpcCast(final OtpNode node, final String peer, final boolean logCalls,
@@ -416,7 +513,7 @@ public class OtpRpc implements IOtpRpc {
         }
     }
 
-    private OtpErlangObject[] convertArgs(final String signature, final Object... args)
+    static OtpErlangObject[] convertArgs(final String signature, final Object... args)
             throws SignatureException {
         final Object[] args0 = args == null ? new OtpErlangObject[] {} : args;
 
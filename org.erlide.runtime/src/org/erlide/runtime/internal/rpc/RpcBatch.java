@@ -0,0 +1,89 @@
+package org.erlide.runtime.internal.rpc;
+
+import java.util.List;
+
+import org.erlide.runtime.rpc.IOtpRpc;
+import org.erlide.runtime.rpc.IRpcBatch;
+import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcResult;
+import org.erlide.util.erlang.SignatureException;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangExternalFun;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.google.common.collect.Lists;
+
+/**
+ * Sends all the calls as one
+ * <code>lists:zipwith3(fun erlang:apply/3, Ms, Fs, As)</code> call, where each
+ * element is <code>apply(rpc, call, [Node, M, F, A])</code>. The inner
+ * rpc:call is local to the backend, but it catches errors so that each call
+ * gets its own result. This only needs what OTP provides, no kernel support.
+ */
+public class RpcBatch implements IRpcBatch {
+
+    private static final OtpErlangObject APPLY = new OtpErlangExternalFun("erlang",
+            "apply", 3);
+    private static final OtpErlangAtom RPC_ATOM = new OtpErlangAtom("rpc");
+    private static final OtpErlangAtom CALL_ATOM = new OtpErlangAtom("call");
+
+    private final IOtpRpc rpc;
+    private final OtpErlangAtom node;
+    private final List<OtpErlangObject> calls = Lists.newArrayList();
+
+    public RpcBatch(final IOtpRpc rpc, final String node) {
+        this.rpc = rpc;
+        this.node = new OtpErlangAtom(node);
+    }
+
+    @Override
+    public IRpcBatch add(final String m, final String f, final String signature,
+            final Object... args) throws RpcException {
+        try {
+            final OtpErlangObject[] args1 = OtpRpc.convertArgs(signature, args);
+            calls.add(new OtpErlangList(new OtpErlangObject[] { node,
+                    new OtpErlangAtom(m), new OtpErlangAtom(f),
+                    new OtpErlangList(args1) }));
+        } catch (final SignatureException e) {
+            throw new RpcException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return calls.size();
+    }
+
+    @Override
+    public List<RpcResult> call() throws RpcException {
+        return call(OtpRpc.DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public List<RpcResult> call(final long timeout) throws RpcException {
+        final List<RpcResult> results = Lists.newArrayListWithCapacity(calls.size());
+        if (calls.isEmpty()) {
+            return results;
+        }
+        final OtpErlangObject[] ms = new OtpErlangObject[calls.size()];
+        final OtpErlangObject[] fs = new OtpErlangObject[calls.size()];
+        for (int i = 0; i < calls.size(); i++) {
+            ms[i] = RPC_ATOM;
+            fs[i] = CALL_ATOM;
+        }
+        final OtpErlangObject res = rpc.call(timeout, "lists", "zipwith3", "xxxx", APPLY,
+                new OtpErlangList(ms), new OtpErlangList(fs), new OtpErlangList(
+                        calls.toArray(new OtpErlangObject[calls.size()])));
+        if (!(res instanceof OtpErlangList)
+                || ((OtpErlangList) res).arity() != calls.size()) {
+            throw new RpcException("Bad batch result: " + res);
+        }
+        for (final OtpErlangObject r : (OtpErlangList) res) {
+            results.add(new RpcResult(r));
+        }
+        return results;
+    }
+
+}
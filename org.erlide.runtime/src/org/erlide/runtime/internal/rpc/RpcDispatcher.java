@@ -0,0 +1,246 @@
+package org.erlide.runtime.internal.rpc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.erlide.runtime.rpc.IRpcResultCallback;
+import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcTimeoutException;
+import org.erlide.util.ErlLogger;
+
+import com.ericsson.otp.erlang.GenericQueue;
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangRef;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpMsg;
+import com.ericsson.otp.erlang.OtpNode;
+import com.ericsson.otp.erlang.OtpOutputStream;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Owns the reply traffic of all the RPCs made to one node.
+ *
+ * <p>
+ * Calls are sent to rex as gen_server calls tagged with a ref, so their replies
+ * all come back as <code>{Ref, Reply}</code> to the dispatcher's mailbox. The
+ * start/progress/stop messages of calls with a result callback arrive in
+ * per-call mailboxes that share the same queue. A single thread reads that
+ * queue and completes the pending futures, so an outstanding call doesn't hold
+ * any thread.
+ * </p>
+ */
+public class RpcDispatcher implements Runnable {
+
+    public static final boolean ENABLED = Boolean
+            .parseBoolean(System.getProperty("erlide.rpc.dispatcher", "true"));
+
+    private static final Object STOP = new Object();
+
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(
+            1, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("rpc-timer-%d")
+                    .build());
+    static {
+        timer.setRemoveOnCancelPolicy(true);
+    }
+    // result callbacks must see their messages in order
+    private static final ExecutorService callbacks = Executors
+            .newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                    .setNameFormat("rpc-callback-%d").build());
+
+    private final OtpNode node;
+    private final GenericQueue queue = new GenericQueue();
+    private final OtpMbox mbox;
+    private final Map<OtpErlangRef, SettableFuture<OtpErlangObject>> calls = new ConcurrentHashMap<>();
+    private final Map<OtpErlangPid, ResultStream> streams = new ConcurrentHashMap<>();
+    private volatile boolean stopped;
+
+    private static class ResultStream {
+        public final OtpMbox mbox;
+        public final IRpcResultCallback callback;
+
+        public ResultStream(final OtpMbox mbox, final IRpcResultCallback callback) {
+            this.mbox = mbox;
+            this.callback = callback;
+        }
+    }
+
+    public RpcDispatcher(final OtpNode node, final String peer) {
+        this.node = node;
+        mbox = node.createMbox();
+        mbox.shareQueue(queue);
+        stopped = false;
+        final Thread thread = new Thread(this, "rpc-dispatch " + peer);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The pid that replies have to be sent to.
+     */
+    public OtpErlangPid self() {
+        return mbox.self();
+    }
+
+    /**
+     * Send a message from the dispatcher's mailbox.
+     */
+    public void send(final String name, final String peer, final OtpOutputStream msg) {
+        mbox.send(name, peer, msg);
+    }
+
+    /**
+     * Register a call whose reply will be tagged with <code>ref</code>. Must be
+     * called before the request is sent.
+     *
+     * @param timeout
+     *            fail the call if no reply arrives in this many milliseconds;
+     *            use {@link OtpRpc#INFINITY} to wait for ever.
+     */
+    public SettableFuture<OtpErlangObject> expect(final OtpErlangRef ref,
+            final long timeout, final String env) {
+        final SettableFuture<OtpErlangObject> result = SettableFuture.create();
+        if (stopped) {
+            result.setException(new RpcException("rpc dispatcher stopped"));
+            return result;
+        }
+        calls.put(ref, result);
+        if (timeout != OtpRpc.INFINITY) {
+            final ScheduledFuture<?> expiry = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (calls.remove(ref) != null) {
+                        result.setException(new RpcTimeoutException(env));
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+            result.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    expiry.cancel(false);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+        return result;
+    }
+
+    /**
+     * Create a mailbox whose start/progress/stop messages are handed to
+     * <code>callback</code>. The mailbox is closed after the "stop" message.
+     */
+    public OtpMbox openStream(final IRpcResultCallback callback) {
+        final OtpMbox stream = node.createMbox();
+        stream.shareQueue(queue);
+        streams.put(stream.self(), new ResultStream(stream, callback));
+        return stream;
+    }
+
+    /**
+     * Fail all the calls waiting for a reply, e.g. because the node went down.
+     */
+    public void failPending(final String reason) {
+        for (final OtpErlangRef ref : calls.keySet()) {
+            final SettableFuture<OtpErlangObject> result = calls.remove(ref);
+            if (result != null) {
+                result.setException(new RpcException(reason));
+            }
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        queue.put(STOP);
+    }
+
+    @Override
+    public void run() {
+        Object item;
+        while ((item = queue.get()) != STOP) {
+            try {
+                dispatch((OtpMsg) item);
+            } catch (final Exception e) {
+                ErlLogger.error(e);
+            }
+        }
+        failPending("rpc dispatcher stopped");
+        for (final ResultStream stream : streams.values()) {
+            node.closeMbox(stream.mbox);
+        }
+        streams.clear();
+        node.closeMbox(mbox);
+    }
+
+    private void dispatch(final OtpMsg msg) throws Exception {
+        if (msg.type() != OtpMsg.sendTag) {
+            return;
+        }
+        final OtpErlangPid to = msg.getRecipientPid();
+        if (to.equals(mbox.self())) {
+            dispatchReply(msg.getMsg());
+        } else {
+            final ResultStream stream = streams.get(to);
+            if (stream != null) {
+                dispatchProgress(stream, msg.getMsg());
+            }
+        }
+    }
+
+    private void dispatchReply(final OtpErlangObject msg) {
+        if (!(msg instanceof OtpErlangTuple)) {
+            return;
+        }
+        final OtpErlangTuple t = (OtpErlangTuple) msg;
+        if (t.arity() != 2 || !(t.elementAt(0) instanceof OtpErlangRef)) {
+            return;
+        }
+        final SettableFuture<OtpErlangObject> result = calls.remove(t.elementAt(0));
+        if (result != null) {
+            if (OtpRpc.CHECK_RPC) {
+                ErlLogger.debug("RPC " + t.elementAt(0) + "<= " + t.elementAt(1));
+            }
+            result.set(t.elementAt(1));
+        }
+    }
+
+    private void dispatchProgress(final ResultStream stream, final OtpErlangObject msg) {
+        if (!(msg instanceof OtpErlangTuple)) {
+            return;
+        }
+        final OtpErlangTuple tuple = (OtpErlangTuple) msg;
+        if (tuple.arity() != 2 || !(tuple.elementAt(0) instanceof OtpErlangAtom)) {
+            return;
+        }
+        final String tag = ((OtpErlangAtom) tuple.elementAt(0)).atomValue();
+        final OtpErlangObject value = tuple.elementAt(1);
+        if ("stop".equals(tag)) {
+            streams.remove(stream.mbox.self());
+            node.closeMbox(stream.mbox);
+        }
+        callbacks.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if ("start".equals(tag)) {
+                        stream.callback.start(value);
+                    } else if ("stop".equals(tag)) {
+                        stream.callback.stop(value);
+                    } else if ("progress".equals(tag)) {
+                        stream.callback.progress(value);
+                    }
+                } catch (final Exception e) {
+                    ErlLogger.error(e);
+                }
+            }
+        });
+    }
+
+}
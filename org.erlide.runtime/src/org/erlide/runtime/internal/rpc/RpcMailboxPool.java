@@ -0,0 +1,86 @@
+package org.erlide.runtime.internal.rpc;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpNode;
+
+/**
+ * A bounded set of long-lived mailboxes used to receive RPC replies.
+ *
+ * <p>
+ * The rex server answers with a plain <code>{rex, Reply}</code> sent to the
+ * caller's pid, so a reply mailbox can only serve one call at a time. A mailbox
+ * is leased for a call and given back only after its reply was received; a
+ * mailbox whose reply never arrived (timeout, receive error) is discarded
+ * instead, so that a late reply can't be mistaken for the answer to another
+ * call.
+ * </p>
+ *
+ * <p>
+ * At most <code>capacity</code> idle mailboxes are kept; with a capacity of 0
+ * every mailbox is closed after use, which is the unpooled behaviour.
+ * </p>
+ */
+public class RpcMailboxPool {
+
+    private final OtpNode node;
+    private final int capacity;
+    private final Queue<OtpMbox> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public RpcMailboxPool(final OtpNode node, final int capacity) {
+        this.node = node;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Get an empty mailbox, reusing an idle one if possible.
+     */
+    public OtpMbox lease() {
+        final OtpMbox mbox = idle.poll();
+        if (mbox != null) {
+            idleCount.decrementAndGet();
+            return mbox;
+        }
+        return node.createMbox();
+    }
+
+    /**
+     * Give back a mailbox whose reply has been consumed. If the pool is full,
+     * the mailbox is closed instead.
+     */
+    public void release(final OtpMbox mbox) {
+        if (idleCount.incrementAndGet() <= capacity) {
+            idle.offer(mbox);
+        } else {
+            idleCount.decrementAndGet();
+            node.closeMbox(mbox);
+        }
+    }
+
+    /**
+     * Close a mailbox whose reply may still arrive.
+     */
+    public void discard(final OtpMbox mbox) {
+        node.closeMbox(mbox);
+    }
+
+    /**
+     * Close all idle mailboxes, e.g. when the peer went down.
+     */
+    public void clear() {
+        OtpMbox mbox;
+        while ((mbox = idle.poll()) != null) {
+            idleCount.decrementAndGet();
+            node.closeMbox(mbox);
+        }
+    }
+
+    public int idleCount() {
+        return idleCount.get();
+    }
+
+}
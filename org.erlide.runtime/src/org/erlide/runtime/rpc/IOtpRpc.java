@@ -75,6 +75,11 @@ public interface IOtpRpc {
     void async_call_result(final IRpcResultCallback cb, final String m, final String f,
             final String signature, final Object... args) throws RpcException;
 
+    /**
+     * Start a batch of calls that will be sent together, in one round-trip.
+     */
+    IRpcBatch batch();
+
     /**
      * Convenience method to send a remote message.
      */
@@ -97,6 +102,9 @@ public interface IOtpRpc {
     OtpErlangObject getRpcResult(OtpMbox mbox, long timeout, String env)
             throws RpcException;
 
+    // y (RpcFuture)
+    void discardRpcMailbox(OtpMbox mbox);
+
     // y (ErlRuntime)
     void setConnected(boolean b);
 
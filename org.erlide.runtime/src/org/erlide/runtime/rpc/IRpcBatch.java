@@ -0,0 +1,36 @@
+package org.erlide.runtime.rpc;
+
+import java.util.List;
+
+/**
+ * Collects calls to be executed together on the backend, so that they cost a
+ * single round-trip instead of one each. The calls are run in order, each one
+ * isolated from the others: a failing call gets an error result but doesn't
+ * affect the rest.
+ */
+public interface IRpcBatch {
+
+    /**
+     * Add a call to the batch; arguments are converted as for
+     * {@link IOtpRpc#call(String, String, String, Object...)}.
+     */
+    IRpcBatch add(final String m, final String f, final String signature,
+            final Object... args) throws RpcException;
+
+    int size();
+
+    /**
+     * Execute all the calls with the default timeout.
+     *
+     * @return one result per call, in the order they were added.
+     */
+    List<RpcResult> call() throws RpcException;
+
+    /**
+     * Execute all the calls; the timeout applies to the whole batch.
+     *
+     * @return one result per call, in the order they were added.
+     */
+    List<RpcResult> call(final long timeout) throws RpcException;
+
+}
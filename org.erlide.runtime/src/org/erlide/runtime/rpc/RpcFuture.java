@@ -10,7 +10,10 @@
  *******************************************************************************/
 package org.erlide.runtime.rpc;
 
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -21,11 +24,24 @@ import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangRef;
 import com.ericsson.otp.erlang.OtpMbox;
 import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class RpcFuture implements CheckedFuture<OtpErlangObject, RpcException> {
 
+    // waits for the replies of mailbox futures that have listeners
+    private static final ExecutorService waiters = Executors
+            .newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
+                    .setNameFormat("rpc-wait-%d").build());
+
     private final OtpMbox mbox;
-    private OtpErlangObject result = null;
+    private final ListenableFuture<OtpErlangObject> reply;
+    private SettableFuture<OtpErlangObject> received;
+    private volatile OtpErlangObject result = null;
+    // serializes reads of the mailbox; failure is guarded by it
+    private final Object receiveLock = new Object();
+    private RpcException failure;
     private final String env;
     private final boolean logCalls;
 
@@ -37,11 +53,27 @@ public class RpcFuture implements CheckedFuture<OtpErlangObject, RpcException> {
         this.ref = ref;
 
         this.mbox = mbox;
+        reply = null;
         this.env = env;
         this.logCalls = logCalls;
         this.rpc = rpc;
     }
 
+    /**
+     * A future whose reply is delivered by a dispatcher instead of being read
+     * from a dedicated mailbox.
+     */
+    public RpcFuture(final OtpErlangRef ref, final ListenableFuture<OtpErlangObject> reply,
+            final String env, final boolean logCalls) {
+        this.ref = ref;
+
+        mbox = null;
+        this.reply = reply;
+        this.env = env;
+        this.logCalls = logCalls;
+        rpc = null;
+    }
+
     @Override
     public OtpErlangObject get() {
         try {
@@ -64,11 +96,46 @@ public class RpcFuture implements CheckedFuture<OtpErlangObject, RpcException> {
 
     @Override
     public boolean isDone() {
-        return result != null;
+        if (reply != null) {
+            return reply.isDone();
+        }
+        final ListenableFuture<OtpErlangObject> r = getReceived();
+        return r != null ? r.isDone() : result != null;
     }
 
+    /**
+     * Dispatched replies notify the listeners directly. For replies read from
+     * a dedicated mailbox, a waiting thread is started on the first call.
+     */
     @Override
     public void addListener(final Runnable listener, final Executor executor) {
+        if (reply != null) {
+            reply.addListener(listener, executor);
+        } else {
+            startReceiving().addListener(listener, executor);
+        }
+    }
+
+    private synchronized ListenableFuture<OtpErlangObject> getReceived() {
+        return received;
+    }
+
+    private synchronized ListenableFuture<OtpErlangObject> startReceiving() {
+        if (received == null) {
+            final SettableFuture<OtpErlangObject> future = SettableFuture.create();
+            received = future;
+            waiters.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.set(receive(OtpRpc.INFINITY));
+                    } catch (final Exception e) {
+                        future.setException(e);
+                    }
+                }
+            });
+        }
+        return received;
     }
 
     @Override
@@ -93,16 +160,87 @@ public class RpcFuture implements CheckedFuture<OtpErlangObject, RpcException> {
     @Override
     public OtpErlangObject checkedGet(final long timeout, final TimeUnit unit)
             throws TimeoutException, RpcException {
-        result = rpc.getRpcResult(mbox, TimeUnit.MILLISECONDS.convert(timeout, unit),
-                env);
-        if (isDone()) {
-            RpcMonitor.recordResponse(ref, result);
+        final OtpErlangObject cached = result;
+        if (cached != null) {
+            return cached;
+        }
+        final ListenableFuture<OtpErlangObject> pending = reply != null ? reply
+                : getReceived();
+        if (pending != null) {
+            return setResult(awaitReply(pending, timeout, unit));
+        }
+        return receive(TimeUnit.MILLISECONDS.convert(timeout, unit));
+    }
+
+    /**
+     * Read the reply from the mailbox, at most once: with the reply, the
+     * mailbox goes back to the pool and may already belong to another call.
+     */
+    private OtpErlangObject receive(final long timeout) throws RpcException {
+        synchronized (receiveLock) {
+            if (result != null) {
+                return result;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            try {
+                return setResult(rpc.getRpcResult(mbox, timeout, env));
+            } catch (final RpcTimeoutException e) {
+                // nothing was received, the mailbox is still ours
+                throw e;
+            } catch (final RpcException e) {
+                failure = e;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Give up on a reply that didn't come in time. Its mailbox is closed
+     * rather than reused, so that a late reply can't reach another call.
+     */
+    public void abandon() {
+        if (mbox == null || getReceived() != null) {
+            // the dispatcher forgets expired calls, a listener's waiter still
+            // reads the mailbox
+            return;
+        }
+        synchronized (receiveLock) {
+            if (result == null && failure == null) {
+                failure = new RpcTimeoutException(env);
+                rpc.discardRpcMailbox(mbox);
+            }
+        }
+    }
+
+    private synchronized OtpErlangObject setResult(final OtpErlangObject value) {
+        if (result == null && value != null) {
+            result = value;
+            RpcMonitor.recordResponse(ref, value);
             if (logCalls) {
-                final Object[] args0 = { result };
+                final Object[] args0 = { value };
                 ErlLogger.debug("call <- %s", args0);
             }
         }
         return result;
     }
 
+    private OtpErlangObject awaitReply(final ListenableFuture<OtpErlangObject> pending,
+            final long timeout, final TimeUnit unit) throws RpcException {
+        try {
+            return pending.get(timeout, unit);
+        } catch (final TimeoutException e) {
+            throw new RpcTimeoutException(env);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RpcException) {
+                throw (RpcException) e.getCause();
+            }
+            throw new RpcException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException(e);
+        }
+    }
+
 }
@@ -15,6 +15,7 @@ import java.util.Map;
 import org.erlide.util.ErlLogger;
 import org.erlide.util.erlang.OtpErlang;
 
+import com.ericsson.otp.erlang.OtpAtomCache;
 import com.ericsson.otp.erlang.OtpErlangAtom;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangRef;
@@ -119,6 +120,9 @@ public class RpcMonitor {
             return;
         }
         final RpcData data = ongoing.remove(ref);
+        if (data == null) {
+            return;
+        }
         final long now = System.currentTimeMillis();
         final RpcInfo info = new RpcInfo(data, result, now);
         add(largest, sizeComparator, info);
@@ -142,15 +146,39 @@ public class RpcMonitor {
     public static OtpErlangRef recordRequest(final OtpNode node, final String peer,
             final String module, final String fun, final OtpErlangObject[] args,
             final long callSize) {
+        // only the monitor uses this ref: rex replies to the mailbox with a
+        // plain {rex, Reply}. The future still reports its response under it.
+        final OtpErlangRef ref = node.createRef();
+        recordRequest(ref, peer, module, fun, args, callSize);
+        return ref;
+    }
+
+    /**
+     * Record a call under a ref created by the caller, for calls whose encoded
+     * form (and thus size) already contains the ref.
+     */
+    public static void recordRequest(final OtpErlangRef ref, final String peer,
+            final String module, final String fun, final OtpErlangObject[] args,
+            final long callSize) {
         callCount++;
         if (DISABLED) {
-            return null;
+            return;
         }
         final RpcData data = new RpcData(System.currentTimeMillis(), peer, module, fun,
                 args, callSize);
-        final OtpErlangRef ref = node.createRef();
-        ongoing.put(ref, data);
-        return ref;
+        synchronized (RpcMonitor.class) {
+            ongoing.put(ref, data);
+        }
+    }
+
+    /**
+     * Percentage of the atoms received from the backends that were found in the
+     * atom cache.
+     */
+    public static double getAtomCacheHitRate() {
+        final long hits = OtpAtomCache.hits();
+        final long total = hits + OtpAtomCache.misses();
+        return total == 0 ? 0 : 100.0 * hits / total;
     }
 
     public static void dump() {
@@ -184,6 +212,8 @@ public class RpcMonitor {
 
         out.println("\n" + delim);
         out.format("*** RpcMonitor statistics%n - %d calls%n", callCount);
+        out.format(" - atom cache: %d hits, %d misses (%.1f%%)%n", OtpAtomCache.hits(),
+                OtpAtomCache.misses(), getAtomCacheHitRate());
         if (DISABLED) {
             out.println(
                     "\nRpcMonitor was not enabled.\n\nUse -Derlide.rpcmonitor to enable it.");
@@ -122,8 +122,11 @@ public class OpenAction extends SelectionDispatchAction {
                 final AbstractErlangEditor editor = (AbstractErlangEditor) activeEditor;
                 textEditor = editor;
                 editor.reconcileNow();
-                final String scannerName = editor.getScannerName();
                 module = editor.getModule();
+                if (module != null) {
+                    module.flushScanner();
+                }
+                final String scannerName = editor.getScannerName();
                 project = editor.getProject();
                 openResult = ErlangEngine.getInstance().getService(OpenService.class)
                         .open(scannerName, offset,
@@ -32,6 +32,7 @@ import org.eclipse.ui.texteditor.link.EditorLinkedModeUI;
 import org.erlide.engine.ErlangEngine;
 import org.erlide.engine.services.parsing.ErlToken;
 import org.erlide.engine.services.parsing.ScannerException;
+import org.erlide.engine.services.parsing.TokenBuffer;
 import org.erlide.ui.editors.erl.autoedit.SmartTypingPreferencePage;
 import org.erlide.ui.internal.ErlideUIPlugin;
 import org.erlide.util.ErlLogger;
@@ -303,7 +304,7 @@ class ErlangBracketInserter implements VerifyKeyListener, ILinkedModeListener {
             final int length) throws BadLocationException {
         final IRegion endLine = document.getLineInformationOfOffset(offset + length);
 
-        List<ErlToken> tokens = null;
+        TokenBuffer tokens = null;
         final int getOffset = offset + length,
                 getLength = endLine.getOffset() + endLine.getLength() - getOffset;
         final String str = document.get(getOffset, getLength);
@@ -315,7 +316,7 @@ class ErlangBracketInserter implements VerifyKeyListener, ILinkedModeListener {
 
         int kind = ErlToken.KIND_OTHER;
         if (tokens != null && !tokens.isEmpty()) {
-            kind = tokens.get(0).getKind();
+            kind = tokens.getKind(0);
         } else if (str.length() > 0) {
             kind = str.charAt(0);
         }
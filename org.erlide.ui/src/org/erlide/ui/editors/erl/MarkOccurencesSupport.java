@@ -313,6 +313,7 @@ public class MarkOccurencesSupport implements IDisposable {
             }
             try {
                 final int offset = aSelection.getOffset();
+                theModule.flushScanner();
                 final OpenResult res = ErlangEngine.getInstance()
                         .getService(OpenService.class).open(theModule.getScannerName(),
                                 offset,
@@ -42,6 +42,7 @@ import org.erlide.engine.ErlangEngine;
 import org.erlide.engine.model.erlang.IErlFunction;
 import org.erlide.engine.model.erlang.IErlPreprocessorDef;
 import org.erlide.engine.model.root.IErlModel;
+import org.erlide.engine.model.root.IErlModule;
 import org.erlide.engine.model.root.IErlProject;
 import org.erlide.engine.services.parsing.ErlToken;
 import org.erlide.engine.services.search.OpenResult;
@@ -287,6 +288,10 @@ public class ErlTextHover implements ITextHover, IInformationProviderExtension2,
             final IErlModel model = ErlangEngine.getInstance().getModel();
             final String externalModulesString = erlProject.getProperties()
                     .getExternalModules();
+            final IErlModule module = editor.getModule();
+            if (module != null) {
+                module.flushScanner();
+            }
             final OtpErlangTuple t = (OtpErlangTuple) ErlangEngine.getInstance()
                     .getService(OtpDocService.class).getOtpDoc(backend, offset,
                             editor.getScannerName(), fImports, externalModulesString,
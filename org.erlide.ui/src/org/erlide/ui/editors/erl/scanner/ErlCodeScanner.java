@@ -10,20 +10,19 @@
  *******************************************************************************/
 package org.erlide.ui.editors.erl.scanner;
 
-import java.util.List;
-
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.rules.IToken;
+import org.eclipse.jface.text.rules.Token;
 import org.erlide.engine.ErlangEngine;
-import org.erlide.engine.services.parsing.ErlToken;
 import org.erlide.engine.services.parsing.ScannerException;
+import org.erlide.engine.services.parsing.TokenBuffer;
 import org.erlide.ui.util.IColorManager;
 import org.erlide.util.ErlLogger;
 
 public class ErlCodeScanner extends ErlTokenScanner {
 
-    protected List<ErlToken> fTokens;
+    protected TokenBuffer fTokens;
     protected int fCrtToken;
     private int rangeLength;
     private int rangeOffset;
@@ -67,8 +66,16 @@ public class ErlCodeScanner extends ErlTokenScanner {
 
     @Override
     public IToken nextToken() {
-        final ErlToken nextErlToken = nextErlToken();
-        return convert(nextErlToken);
+        if (fTokens == null) {
+            return Token.EOF;
+        }
+
+        fCrtToken++;
+        if (fCrtToken >= fTokens.size()
+                || fTokens.getOffset(fCrtToken) >= rangeOffset + rangeLength) {
+            return Token.EOF;
+        }
+        return convert(fTokens.getKind(fCrtToken));
     }
 
     @Override
@@ -81,8 +88,7 @@ public class ErlCodeScanner extends ErlTokenScanner {
             return 0;
         }
 
-        final ErlToken tk = fTokens.get(fCrtToken);
-        return tk.getOffset();
+        return fTokens.getOffset(fCrtToken);
     }
 
     @Override
@@ -95,24 +101,6 @@ public class ErlCodeScanner extends ErlTokenScanner {
             return 0;
         }
 
-        final ErlToken tk = fTokens.get(fCrtToken);
-        return tk.getLength();
-    }
-
-    public ErlToken nextErlToken() {
-        if (fTokens == null) {
-            return ErlToken.EOF;
-        }
-
-        fCrtToken++;
-        if (fCrtToken >= fTokens.size()) {
-            return ErlToken.EOF;
-        }
-
-        final ErlToken tk = fTokens.get(fCrtToken);
-        if (tk.getOffset() >= rangeOffset + rangeLength) {
-            return ErlToken.EOF;
-        }
-        return fTokens.get(fCrtToken);
+        return fTokens.getLength(fCrtToken);
     }
 }
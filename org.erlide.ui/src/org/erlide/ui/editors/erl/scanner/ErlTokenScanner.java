@@ -83,8 +83,11 @@ public abstract class ErlTokenScanner extends BufferedRuleBasedScanner {
         if (tk == ErlToken.EOF || tk == null) {
             return Token.EOF;
         }
+        return convert(tk.getKind());
+    }
 
-        switch (tk.getKind()) {
+    public IToken convert(final int kind) {
+        switch (kind) {
         case ErlToken.KIND_STRING:
             return t_string;
         case ErlToken.KIND_ATOM:
@@ -1078,11 +1078,16 @@ public class DefaultErlangFoldingStructureProvider implements IProjectionListene
             if (element instanceof IErlModule && element != fModule) {
                 return;
             }
-            final IErlElementDelta d = ErlangEngine
-                    .getInstance()
-                    .getModel()
-                    .createElementDelta(IErlElementDelta.CHANGED,
-                            IErlElementDelta.F_CONTENT, fModule);
+            // when no form was added, removed or changed, the annotations
+            // follow the text and need no update
+            IErlElementDelta d = fModule == null ? null : fModule.getParseDelta();
+            if (d == null) {
+                d = ErlangEngine
+                        .getInstance()
+                        .getModel()
+                        .createElementDelta(IErlElementDelta.CHANGED,
+                                IErlElementDelta.F_CONTENT, fModule);
+            }
             processDelta(d);
         } finally {
             fCachedDocument = null;
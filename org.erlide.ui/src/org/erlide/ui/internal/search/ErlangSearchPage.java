@@ -606,6 +606,7 @@ public class ErlangSearchPage extends DialogPage implements ISearchPage {
             final int offset = textSel.getOffset();
             OpenResult res;
             try {
+                module.flushScanner();
                 res = ErlangEngine
                         .getInstance()
                         .getService(OpenService.class)
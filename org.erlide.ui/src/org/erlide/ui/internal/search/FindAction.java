@@ -210,6 +210,7 @@ public abstract class FindAction extends SelectionDispatchAction {
             final ISelection sel = getSelection();
             final ITextSelection textSel = (ITextSelection) sel;
             final int offset = textSel.getOffset();
+            module.flushScanner();
             final OpenResult res = ErlangEngine
                     .getInstance()
                     .getService(OpenService.class)